@@ -8,14 +8,16 @@
 */
 
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 import binary.*;
 import java.util.zip.*;
+import java.util.concurrent.*;
 import zpp.*;
 
 /**
 	<p>The compression used a combination of the LZSS algorithm, Huffman coding and word references from a static dictionnary.</p>
-	<p>The LZSS algorithm may use a reference to a duplicated string (256 bytes max) occurring in a previous block, up to 64K input bytes before.</p>
+	<p>The LZSS algorithm may use a reference to a duplicated string (256 bytes max, or 4096 with long matches) occurring in a previous block, up to 64K input bytes before.</p>
 
 	<p>The compressed data consists of a series of elements of two types: literal bytes (of strings that have not been detected
 	as duplicated within the previous input bytes), and pointers to duplicated strings, where a pointer is represented as a pair <length, backward distance>.</p>
@@ -26,7 +28,8 @@ import zpp.*;
 */
 public class LZCompress {
 
-	String logFile = "log.txt";
+	// notified of each code generated (no trace by default)
+	TraceListener trace = null;
 
 	byte old_code_ascii;
 	byte code_ascii;
@@ -46,31 +49,70 @@ public class LZCompress {
 	static int LOOK_AHEAD_SIZE = ( 1 << LENGTH_BIT_COUNT); // Input buffer length of 256 bytes
 
 	static int BREAK_EVEN = 3;
-	static int TREE_ROOT = WINDOW_SIZE;
-	static int UNUSED = 0;
+
+	// number of codes generated before the block is written
+	static int BLOCK_SIZE = (1 << 16);
 
 	static int maxBits = 20;
-	int[] count = new int[maxBits];
-	int[] next_code = new int[maxBits];
 
-	BinaryTree[] tabStatistics_len;
-	BinaryTree[] tabStatistics_dis;
+	// the code lengths are limited to 15 bits, as the distance code lengths are written on 4 bits
+	static final int MAX_CODE_BITS = Huffman.MAX_BITS;
+
+	Huffman huffman = new Huffman();
+
+	// the frequences and the Huffman codes of the current block
+	HuffmanEncoder encoder_len;
+	HuffmanEncoder encoder_dis;
 
 	static int len_max = 281;
 	static int dis_max = 32;
 
+	// the window of 2^window_bits bytes (64K by default), the distance symbols depend on it (see MatchCodes)
+	int window_bits = INDEX_BIT_COUNT;
+	int window_size = WINDOW_SIZE;
+
+	// the look ahead, the longest string matching (256 bytes, or 4096 with long matches)
+	int look_ahead_size = LOOK_AHEAD_SIZE;
+
 	BinaryInputStream bis;
 	BinaryOutputStream bos;
 
-	// this vector will store the compress code generated during the pass
-	Vector gen;
+	// a mapped input file or a byte buffer is read directly, without a BinaryInputStream
+	MappedInputStream mapped;
+	ByteBuffer source;
+
+	// this buffer will store the compress code generated for the current block
+	TokenBuffer gen;
 
 	int[] window;
 
-	// the back window is saved as a tree representation.
-	int[] tree_parent;
-	int[] tree_smaller_child;
-	int[] tree_larger_child;
+	// the back window is indexed by a match finder (a hash chain by default, see Level).
+	MatchFinder finder;
+
+	// the lazy matching policy
+	Level level;
+
+	// the segment of the optimal parsing (null when the level is not optimal)
+	OptimalParser parser = null;
+
+	// the words of the dictionnary, coded by the symbol 280 (null when the dictionnary is empty or not used)
+	Dico dico;
+
+	// the estimated cost (in bits) of a literal, of a length or distance symbol, and of the word symbol,
+	// to choose between a word of the dictionnary and a string matching on the back window
+	static int LITERAL_BITS = 6;
+	static int SYMBOL_BITS = 6;
+	static int WORD_SYMBOL_BITS = 8;
+
+	// the preset dictionnary (its last bytes, which fit into the back window) and its identifier
+	byte[] preset = null;
+	int preset_id = 0;
+
+	// the bytes of the preset dictionnary still to read before the input
+	int preset_remaining = 0;
+
+	// the number of bytes read since the back window was cleared
+	long read_count = 0;
 
 	int look_ahead_bytes = 0;
 	int current_distance = 1;
@@ -79,1058 +121,1277 @@ public class LZCompress {
 	int match_distance = 0;
 	// int match_node = 0;
 
+	// the size of a chunk for a parallel compression
+	static int CHUNK_SIZE = (1 << 22);
+
+	// the bytes of the previous chunk primed into the back window of a chunk (whatever the size of the window)
+	static int PRIME_SIZE = (1 << 16);
+
+	// the first bytes of an input stream read before the allocation of a window larger than 64 KB
+	static final int HEAD_SIZE = (1 << 20);
+
+	// the threads of a parallel compression (null for a sequential compression)
+	ForkJoinPool pool = null;
+	int chunk_size = CHUNK_SIZE;
+	boolean prime = true;
+	int prime_size = PRIME_SIZE;
+
+	// the chunks are written as independent frames
+	boolean framed = false;
+
+	// the compressors of each thread, by compression level (see getInstance)
+	static final ThreadLocal<LZCompress[]> instances = ThreadLocal.withInitial(() -> new LZCompress[Level.OPTIMAL + 1]);
+
 	public LZCompress (String inFile, OutputStream os)
 	{
-		try {
-			if (logFile != null) redirectOutput();
-
-			// initialisation of the string trees
-			window = new int[WINDOW_SIZE];
-			//tampon = new byte[4];
-			//tampon_dico = new int[25];
+		this(inFile, os, Level.DEFAULT);
+	}
 
-			tree_parent = new int[WINDOW_SIZE+1];
-			tree_smaller_child= new int[WINDOW_SIZE+1];
-			tree_larger_child = new int[WINDOW_SIZE+1];
+	/**
+		<p>Compress the input file with a compression level from Level.FASTEST (1) to Level.OPTIMAL (11).</p>
+	*/
+	public LZCompress (String inFile, OutputStream os, int _level)
+	{
+		this(inFile, os, Level.get(_level), Level.get(_level).createFinder());
+	}
 
-			for (int i=0; i < WINDOW_SIZE+1; i++) {
-				tree_parent[i] = 0;
-				tree_smaller_child[i] = 0;
-				tree_larger_child[i] = 0;
-			}
+	/**
+		<p>Compress the input file with the given match finder (a TreeMatchFinder or a HashChainMatchFinder).</p>
+	*/
+	public LZCompress (String inFile, OutputStream os, MatchFinder _finder)
+	{
+		this(inFile, os, Level.get(Level.DEFAULT), _finder);
+	}
 
-			tree_larger_child[TREE_ROOT] = 1;
-			tree_parent[1] = TREE_ROOT;
-			tree_larger_child[1] = UNUSED;
-			tree_smaller_child[1] = UNUSED;
+	public LZCompress (String inFile, OutputStream os, Level _level, MatchFinder _finder)
+	{
+		this(inFile, os, _level, _finder, null);
+	}
 
-			// first pass : get statistics from input stream
-			tabStatistics_len = new BinaryTree[len_max];
-			for (int i=0; i<len_max; i++) {
-				tabStatistics_len[i] = new BinaryTree(i,0);
-			}
+	/**
+		<p>Compress the input file and notify each code generated to the trace listener (may be null).</p>
+	*/
+	public LZCompress (String inFile, OutputStream os, Level _level, MatchFinder _finder, TraceListener _trace)
+	{
+		this(_level, _finder, _trace);
 
-			tabStatistics_dis = new BinaryTree[dis_max];
-			for (int i=0; i<dis_max; i++) {
-				tabStatistics_dis[i] = new BinaryTree(i,0);
-			}
+		try {
+			MappedInputStream mis = new MappedInputStream(inFile);
+			compress(mis, os);
+			mis.close();
+		}
+		catch (Exception e) {
+			System.out.println("Compress " + e);
+		}
+	}
 
-			for (int i=0; i < maxBits; i++) {
-				count[i] = 0;
-				next_code[i] = 0;
-			}
+	/**
+		<p>A compressor with a compression level from Level.FASTEST (1) to Level.OPTIMAL (11),
+		the input streams are compressed by the compress method.</p>
+	*/
+	public LZCompress (int _level)
+	{
+		this(Level.get(_level), Level.get(_level).createFinder(), null);
+	}
 
+	/**
+		<p>Returns the compressor of the current thread for a compression level (created by the first call).</p>
+		<p>Its buffers are kept from a compression to the next one, so small inputs are compressed without allocation.
+		It must not be used by another thread, and its settings (setParallel, setFramed) should not be changed.</p>
+	*/
+	public static LZCompress getInstance(int level)
+	{
+		Level.get(level);
 
-			// ----------------------------------------------------------------------------------------------------------
+		LZCompress[] compressors = instances.get();
+		if (compressors[level] == null) compressors[level] = new LZCompress(level);
+		return compressors[level];
+	}
 
-			FileInputStream fis = new FileInputStream(inFile);
-			BufferedInputStream bufis = new BufferedInputStream(fis);
-			bis = new BinaryInputStream(bufis);
+	public LZCompress (Level _level, MatchFinder _finder, TraceListener _trace)
+	{
+		level = _level;
+		trace = _trace;
 
-			gen = new Vector(fis.available(), 100000);
+		// initialisation of the string trees
+		window = new int[WINDOW_SIZE];
 
-			try {
-				// compress until the end of the input file
-				while (true) {
-					// filling the buffer
-					while (look_ahead_bytes < LOOK_AHEAD_SIZE) {
-						window[current_distance + look_ahead_bytes] = readNext();
-						look_ahead_bytes ++;
-					}
+		finder = _finder;
+		finder.init(window, LOOK_AHEAD_SIZE);
 
-					int tmp_match_length;
-					int tmp_match_distance;
-					// int tmp_match_node;
+		encoder_len = new HuffmanEncoder(len_max);
+		encoder_dis = new HuffmanEncoder(dis_max);
 
-					while (look_ahead_bytes > 0) {
+		// the optimal parsing needs all the string matchings met by the finder
+		if (level.optimal) {
+			parser = new OptimalParser();
+			finder.collect = true;
+		}
 
-						// lazy matching
+		// the codes are written block by block, the memory used does not depend on the input file size
+		gen = new TokenBuffer(BLOCK_SIZE + 2);
+	}
 
-						tmp_match_length = match_length;
-						tmp_match_distance = match_distance;
-						// tmp_match_node = match_node;
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compress the input stream by chunks of <code>_chunk_size</code> bytes on the threads of the pool
+		(a null pool for a sequential compression).</p>
+		<p>When <code>_prime</code> is set, the back window of a chunk is filled with the end of the previous chunk :
+		the compression is nearly as good as a sequential one.
+		Otherwise the chunks are compressed independently.</p>
+		<p>The chunks are compressed with a match finder of the compression level, and are not traced.</p>
+	*/
+	public void setParallel(ForkJoinPool _pool, int _chunk_size, boolean _prime)
+	{
+		pool = _pool;
+		chunk_size = _chunk_size;
+		prime = _prime;
+	}
 
-						searchString(mod_window(current_distance + 1));
+	/**
+		<p>The number of bytes at the end of the previous chunk primed into the back window of a chunk
+		(64K by default, at most the size of the window).
+		A larger window finds farther string matchings in a chunk, but each chunk first indexes these bytes.</p>
+	*/
+	public void setPrimeSize(int _prime_size)
+	{
+		prime_size = _prime_size;
+	}
 
-						if (tmp_match_length >= match_length) {
-							// if (tmp_match_node >= match_node)
-							// match_node = tmp_match_node;
-							match_length = tmp_match_length;
-							match_distance = tmp_match_distance;
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Write the chunks as independent frames : each frame records its size and its compressed size,
+		and does not refer to a previous frame, so the frames can be expanded in parallel.</p>
+		<p>The frames are made of chunks of the size given to setParallel (4 MB by default), even for a sequential compression.</p>
+	*/
+	public void setFramed(boolean _framed)
+	{
+		framed = _framed;
+	}
 
-							find_match();
-						}
-						else {
-							match_length = 0;
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Use a window of 2^<code>bits</code> bytes, from 16 (64K, the default) to 26 (64 MB) : a string may then be found
+		up to 64 MB before. The window size is recorded in the header, and the expander allocates the same window.</p>
+		<p>The compressor uses 4 bytes by position of the window, and the match finder 4 to 12 more.
+		The window is allocated by the compression : when the size of the input is known (a byte buffer or a file),
+		only the window holding the input is allocated.</p>
+	*/
+	public void setWindowBits(int bits)
+	{
+		if ((bits < MatchCodes.MIN_WINDOW_BITS) || (bits > MatchCodes.MAX_WINDOW_BITS)) throw new IllegalArgumentException("window of " + bits + " bits");
 
-							find_match();
+		window_bits = bits;
+		encoder_dis = new HuffmanEncoder(MatchCodes.distanceSymbols(bits));
+	}
 
-							deleteString(mod_window(current_distance + LOOK_AHEAD_SIZE));
+	/**
+		<p>Allocate the window for an input of <code>size</code> bytes (-1 when unknown) : the window of 2^window_bits bytes,
+		or a smaller one when the input and the preset dictionnary fit into it.</p>
+		<p>A window already allocated is kept when it is large enough, so a compressor does not allocate it again for each input.</p>
+	*/
+	void allocateWindow(long size)
+	{
+		int bits = window_bits;
 
-							window[mod_window(current_distance + LOOK_AHEAD_SIZE)] = readNext();
+		if (size >= 0) {
+			int allocated_bits = Integer.numberOfTrailingZeros(window_size);
+			long needed = 1 + size + look_ahead_size + ((preset != null) ? preset.length : 0);
+			bits = Math.min(window_bits, Math.max(allocated_bits, MatchCodes.windowBits(needed)));
+		}
 
-							current_distance = mod_window(current_distance + 1);
-							addString(current_distance);
+		setWindow(window_bits, bits);
+	}
 
-							find_match();
-						}
+	/**
+		<p>Use the distance symbols of a window of 2^<code>bits</code> bytes, with a smaller window of 2^<code>allocated_bits</code> bytes
+		when the input is known to fit into it (for a chunk).</p>
+	*/
+	void setWindow(int bits, int allocated_bits)
+	{
+		window_bits = bits;
+		encoder_dis = new HuffmanEncoder(MatchCodes.distanceSymbols(bits));
+
+		if (window_size != (1 << allocated_bits)) {
+			window_size = (1 << allocated_bits);
+			window = new int[window_size];
+			finder.init(window, look_ahead_size);
+			read_count = 0;
+		}
+	}
 
-						while (replace_count > 0) {
-							deleteString(mod_window(current_distance + LOOK_AHEAD_SIZE));
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Use a look ahead of 4096 bytes : a string matching may then be 4096 bytes long (instead of 256),
+		so a long run or a repeated record is coded once instead of by pieces of 256 bytes.</p>
+		<p>The lengths of more than 258 bytes are coded by the symbol 281 (see MatchCodes), recorded in the header.
+		The back window is 3840 bytes shorter.</p>
+	*/
+	public void setLongMatches(boolean long_matches)
+	{
+		look_ahead_size = long_matches ? MatchCodes.LONG_LOOK_AHEAD : LOOK_AHEAD_SIZE;
+		encoder_len = new HuffmanEncoder(long_matches ? len_max + 1 : len_max);
+		finder.init(window, look_ahead_size);
+	}
 
-							window[mod_window(current_distance + LOOK_AHEAD_SIZE)] = readNext();
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Refer to the words of a dictionnary when they are cheaper than a string matching
+		(null or an empty dictionnary for no word, the default).</p>
+		<p>The compressed data can then only be expanded with the same dictionnary (see LZExpand.setDico).</p>
+	*/
+	public void setDico(Dico _dico)
+	{
+		dico = ((_dico != null) && (_dico.size() > 0)) ? _dico : null;
+		if (parser != null) parser.setDico(dico);
+	}
 
-							current_distance = mod_window(current_distance + 1);
+	/**
+		<p>Prime the back window with a preset dictionnary (null for none) : the input may then refer to its bytes
+		as if they were written just before, which is most useful for small messages.</p>
+		<p>Only the last 65280 bytes are used. The compressed data can then only be expanded with the same bytes (see LZExpand.setDictionary).</p>
+	*/
+	public void setDictionary(byte[] dictionary)
+	{
+		if ((dictionary == null) || (dictionary.length == 0)) {
+			preset = null;
+			preset_id = 0;
+			return;
+		}
 
-							addString(current_distance);
+		int size = Math.min(dictionary.length, WINDOW_SIZE - LOOK_AHEAD_SIZE);
+		preset = Arrays.copyOfRange(dictionary, dictionary.length - size, dictionary.length);
 
-							replace_count --;
-						} // End While
+		Adler32 adler = new Adler32();
+		adler.update(preset);
+		preset_id = (int) adler.getValue();
+	}
 
-					} // End While
-				} // End While
-			}
-			catch (EOFException e) {
-				System.out.println(e);
-				System.out.println("-------------------------------------------------------------------------");
+	/**
+		<p>Returns the header of the compressed data (without frames).</p>
+	*/
+	Header header()
+	{
+		Header header = new Header();
+		if (dico != null) {
+			header.flags |= Header.WORDS;
+			header.dictionary = dico.id();
+		}
+		if (preset != null) {
+			header.flags |= Header.PRESET;
+			header.preset = preset_id;
+		}
+		if (window_bits != MatchCodes.MIN_WINDOW_BITS) {
+			header.flags |= Header.WINDOW;
+			header.window_bits = window_bits;
+		}
+		if (look_ahead_size != LOOK_AHEAD_SIZE) header.flags |= Header.LONG;
+		return header;
+	}
 
-				// working on the remaining buffer
-				while (look_ahead_bytes > 0) {
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compress the input stream into the output stream (the streams are not closed).</p>
+	*/
+	public void compress(InputStream is, OutputStream os) throws IOException
+	{
+		BinaryOutputStream out = new BinaryOutputStream(os);
 
-					while (replace_count > 0) {
-						deleteString(mod_window(current_distance + LOOK_AHEAD_SIZE));
-						look_ahead_bytes --;
-						current_distance = mod_window(current_distance + 1);
-						addString(current_distance);
-						replace_count --;
-					}
+		Header header = header();
+		if (framed) header.flags |= Header.FRAMES;
+		header.write(out);
 
-					if (look_ahead_bytes > 0) {
-						find_match();
-					}
+		if ((pool == null) && !framed) {
+			if ((is instanceof MappedInputStream) || (window_bits == MatchCodes.MIN_WINDOW_BITS)) {
+				allocateWindow((is instanceof MappedInputStream) ? ((MappedInputStream) is).length() : -1);
+				compressBlocks(is, out, 0, true);
+			}
+			else {
+				// the size of a short input stream is known from its first bytes, its window is not allocated in full
+				byte[] head = readChunk(is, HEAD_SIZE);
+				if (head == null) head = new byte[0];
+
+				if (head.length < HEAD_SIZE) {
+					allocateWindow(head.length);
+					compressBlocks(ByteBuffer.wrap(head), out, 0, true);
+				}
+				else {
+					allocateWindow(-1);
+					compressBlocks(new SequenceInputStream(new ByteArrayInputStream(head), is), out, 0, true);
 				}
 			}
+		}
+		else compressChunks(is, out);
 
-			tabStatistics_len[256].frequence ++;
+		out.writeEOF();
+		out.flush();
+	}
 
-			bis.close();
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compress the input file into the output file : the input file is memory mapped,
+		and the output file is written through a large direct buffer.</p>
+	*/
+	public void compressFile(String inFile, String outFile) throws IOException
+	{
+		MappedInputStream mis = new MappedInputStream(inFile);
+		ChannelOutputStream cos = new ChannelOutputStream(outFile);
 
+		try {
+			compress(mis, cos);
+		}
+		finally {
+			mis.close();
+			cos.close();
+		}
+	}
 
-			System.out.println("-----------------------------------------------");
-			for (int i=0; i<len_max; i++) {
-				System.out.println(Binary.toHexaString((byte) i)
-					+ " -> "
-					+ tabStatistics_len[i].frequence);
-			}
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Returns the maximum size of the compressed data of <code>n</code> bytes, as written by compress(ByteBuffer, ByteBuffer).</p>
+	*/
+	public static int maxCompressedLength(int n)
+	{
+		return Header.SIZE + 4 + n;
+	}
 
-			System.out.println("-----------------------------------------------");
-			for (int i=0; i<dis_max; i++) {
-				System.out.println(Binary.toHexaString((byte) i)
-					+ " -> "
-					+ tabStatistics_dis[i].frequence);
-			}
+	/**
+		<p>Compress the remaining bytes of <code>src</code> into <code>dst</code>, returns the number of bytes written.</p>
+		<p>The buffers may be heap or direct buffers, the bytes are read directly from <code>src</code>.
+		When the compressed data would be larger than the input, the input is stored without compression,
+		so <code>maxCompressedLength(src.remaining())</code> bytes are enough.
+		A BufferOverflowException is thrown (and nothing is written) when <code>dst</code> is too small.</p>
+		<p>The data is compressed sequentially (the parallel settings are not used).</p>
+	*/
+	public int compress(ByteBuffer src, ByteBuffer dst) throws IOException
+	{
+		int start = dst.position();
+		int n = src.remaining();
+		int stored = maxCompressedLength(n);
 
+		// the compressed data must be smaller than the stored data
+		ByteBuffer buffer = dst.duplicate();
+		buffer.limit(start + Math.min(dst.remaining(), stored - 1));
 
-			// build the vector
-			Vector list = new Vector();
-			for (int i=0; i<len_max; i++) {
-				if  (tabStatistics_len[i].frequence > 0) {
-					list.addElement(tabStatistics_len[i]);
-				}
-			}
-			sort(list,0,list.size()-1);
+		try {
+			BinaryOutputStream out = new BinaryOutputStream(new ByteBufferOutputStream(buffer));
+			header().write(out);
 
-			Vector list_ref = new Vector();
-			for (int i=0; i<dis_max; i++) {
-				if  (tabStatistics_dis[i].frequence > 0) {
-					list_ref.addElement(tabStatistics_dis[i]);
-				}
-			}
-			sort(list_ref,0,list_ref.size()-1);
+			allocateWindow(n);
+			compressBlocks(src.duplicate(), out, 0, true);
 
-			System.out.println("-----------------------------------------------");
+			out.writeEOF();
+			out.flush();
 
-			// build the huffman tree
+			src.position(src.limit());
+			dst.position(buffer.position());
+		}
+		catch (BufferOverflowException e) {
+			if (dst.remaining() < stored) throw e;
 
-			for (int i=0; i < maxBits; i++) {
-				count[i] = 0;
-				next_code[i] = 0;
-			}
+			BinaryOutputStream out = new BinaryOutputStream(new ByteBufferOutputStream(dst));
+			Header header = new Header();
+			header.flags |= Header.STORED;
+			header.write(out);
 
-			int size = list.size();
+			out.writeBit(n, 32);
+			out.flush();
+			dst.put(src);
+		}
 
-			BinaryTree node_0 = null;
-			BinaryTree node_1 = null;
-			BinaryTree tree = null;
+		return dst.position() - start;
+	}
 
-			for (int k=0; k<size-1; k++) {
+	/**
+		<p>Compress the array into <code>dst</code>, returns the number of bytes written.</p>
+	*/
+	public int compress(byte[] src, ByteBuffer dst) throws IOException
+	{
+		return compress(ByteBuffer.wrap(src), dst);
+	}
 
-				node_0  = (BinaryTree) list.elementAt(0);
-				node_1  = (BinaryTree) list.elementAt(1);
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compress the input stream into blocks written into the output stream.
+		The first <code>skip</code> bytes are only added to the back window, no code is generated for them.</p>
+		<p>The last block is marked as the last block of the file when <code>last</code> is set.</p>
+		<p>Without skipped bytes, the back window is primed with the preset dictionnary
+		(otherwise the skipped bytes already are the end of the preset dictionnary and of the previous data).</p>
+	*/
+	void compressBlocks(InputStream is, BinaryOutputStream out, int skip, boolean last) throws IOException
+	{
+		source = null;
+		if (is instanceof MappedInputStream) {
+			mapped = (MappedInputStream) is;
+			bis = null;
+		}
+		else {
+			mapped = null;
+			bis = new BinaryInputStream(is);
+		}
 
-				int sum = node_0.frequence + node_1.frequence;
+		compressBlocks(out, skip, last, false);
+	}
 
-				tree = new BinaryTree(-1, sum, node_0, node_1);
-				// tree.toString();
+	/**
+		<p>Compress the remaining bytes of the byte buffer into blocks written into the output stream.</p>
+	*/
+	void compressBlocks(ByteBuffer src, BinaryOutputStream out, int skip, boolean last) throws IOException
+	{
+		source = src;
+		mapped = null;
+		bis = null;
 
-				list.removeElementAt(0);
-				list.removeElementAt(0);
+		compressBlocks(out, skip, last, false);
+	}
 
-				list.insertElementAt(tree, 0);
-				sort(list,0,list.size()-1);
-			}
+	/**
+		<p>Compress the remaining bytes of the byte buffer as the continuation of the bytes compressed by the previous call :
+		the back window and its index are kept, so the previous bytes do not have to be added again.</p>
+	*/
+	void resumeBlocks(ByteBuffer src, BinaryOutputStream out, boolean last) throws IOException
+	{
+		source = src;
+		mapped = null;
+		bis = null;
+
+		compressBlocks(out, 0, last, true);
+	}
 
-			convert_tree_to_code(tree,0);
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Clear the back window, its index and the current block, as before a new compression (done by each compression).</p>
+		<p>The buffers are kept, and only the positions of the window written since the previous reset are cleared,
+		so a small input does not pay for the whole window.</p>
+	*/
+	public void reset()
+	{
+		look_ahead_bytes = 0;
+		current_distance = 1;
+		replace_count = 0;
+		match_length = 0;
+		match_distance = 0;
 
-			// System.out.println("-----------------------------------------------");
+		// the positions 1 to read_count are written (or the whole window)
+		int used = (int) Math.min(window_size, read_count + 1);
+		finder.reset(used);
+		finder.max_length = look_ahead_size;
+		Arrays.fill(window, 0, used, 0);
+		read_count = 0;
+
+		encoder_len.clear();
+		encoder_dis.clear();
+		gen.clear();
+		if (parser != null) parser.clear();
+	}
 
-			int compressCode = 0;
-			count[0] = 0;
-			for (int bits = 1; bits < maxBits; bits++) {
-				compressCode = (compressCode + count[bits-1]) << 1;
-				next_code[bits] = compressCode;
+	// ---------------------------------------------------------------------------------------------
+	private void compressBlocks(BinaryOutputStream out, int skip, boolean last, boolean resume) throws IOException
+	{
+		bos = out;
+
+		preset_remaining = 0;
+		if (!resume) {
+			reset();
+
+			if ((skip == 0) && (preset != null)) {
+				preset_remaining = preset.length;
+				skip = preset.length;
 			}
+		}
+		// the current position was added when the next bytes were not known, it is searched again
+		else deleteString(current_distance);
+
+		boolean eof = false;
+		try {
+			// filling the buffer
+			while (look_ahead_bytes < look_ahead_size) {
+				window[mod_window(current_distance + look_ahead_bytes)] = readNext();
+				look_ahead_bytes ++;
+			}
+		}
+		catch (EOFException e) {
+			eof = true;
+		}
+
+		// the first string of the window
+		finder.max_length = look_ahead_bytes;
+		addString(current_distance);
 
-			BinaryTree node = null;
-			for (int i=0; i<len_max; i++) {
-				node = tabStatistics_len[i];
+		try {
+			// compress until the end of the input file
+			while (!eof) {
+				int tmp_match_length;
+				int tmp_match_distance;
+				// int tmp_match_node;
+
+				while (look_ahead_bytes > 0) {
 
-				if (node != null) {
-					int len = node.nbBits;
-					if (len != 0) {
-						node.compressCode = reverse(next_code[len],len);
-						next_code[len]++;
+					// the first bytes are only added to the back window
+					if (skip > 0) {
+						skip --;
+						replace_count = 1;
 					}
-				}
-			}
+					else if (parser != null) find_optimal();
+					else {
 
-			print(tabStatistics_len);
+						// lazy matching
 
-			// System.out.println("-----------------------------------------------");
+						tmp_match_length = match_length;
+						tmp_match_distance = match_distance;
+						// tmp_match_node = match_node;
 
-			for (int i=0; i < maxBits; i++) {
-				count[i] = 0;
-				next_code[i] = 0;
-			}
+						int lazy = 0;
+						if ((level.lazy_depth > 0) && (tmp_match_length < level.max_lazy)) {
+							searchString(mod_window(current_distance + 1));
+							if (match_length > tmp_match_length) lazy = 1;
+
+							else if (level.lazy_depth > 1) {
+								// the two literals and the extra bits of a farther distance must be paid by a longer string matching
+								searchString(mod_window(current_distance + 2));
+								int extra_bits = distanceExtraBits(match_distance) - distanceExtraBits(tmp_match_distance);
+								if (2 * (match_length - tmp_match_length) > 16 + extra_bits) lazy = 2;
+							}
+						}
 
-			node_0 = null;
-			node_1 = null;
-			tree 	= null;
+						if (lazy == 0) {
+							// if (tmp_match_node >= match_node)
+							// match_node = tmp_match_node;
+							match_length = tmp_match_length;
+							match_distance = tmp_match_distance;
 
-			size = list_ref.size();
+							find_match();
+						}
+						else if (lazy == 2) {
+							// a single character, the next position will be evaluated again
+							match_length = 0;
 
-			for (int k=0; k<size-1; k++) {
+							find_literal();
+						}
+						else {
+							match_length = 0;
 
-				node_0  = (BinaryTree) list_ref.elementAt(0);
-				node_1  = (BinaryTree) list_ref.elementAt(1);
+							find_literal();
 
-				int sum = node_0.frequence + node_1.frequence;
+							deleteString(mod_window(current_distance + look_ahead_size));
 
-				tree 	= new BinaryTree(-1, sum, node_0, node_1);
+							window[mod_window(current_distance + look_ahead_size)] = readNext();
 
-				list_ref.removeElementAt(0);
-				list_ref.removeElementAt(0);
+							current_distance = mod_window(current_distance + 1);
+							addString(current_distance);
 
-				list_ref.insertElementAt(tree, 0);
-				sort(list_ref,0,list_ref.size()-1);
-			}
+							find_match();
+						}
+					} // End If
 
-			if (tree != null) convert_tree_to_code(tree,0);
+					// the positions inside a string matching longer than 256 bytes are not indexed (but the last one, searched for the next code) :
+					// a run of 4096 bytes would otherwise be compared up to 4096 times with itself by each position
+					int unindexed = (replace_count > LOOK_AHEAD_SIZE) ? replace_count : 0;
 
-			compressCode = 0;
-			count[0] = 0;
-			for (int bits = 1; bits < maxBits; bits++) {
-				compressCode = (compressCode + count[bits-1]) << 1;
-				next_code[bits] = compressCode;
-			}
+					while (replace_count > 0) {
+						deleteString(mod_window(current_distance + look_ahead_size));
 
-			for (int i=0; i<dis_max; i++) {
-				node = tabStatistics_dis[i];
+						window[mod_window(current_distance + look_ahead_size)] = readNext();
 
-				if (node != null) {
-					int len = node.nbBits;
-					if (len != 0) {
-						node.compressCode = reverse(next_code[len],len);
-						next_code[len]++;
-					}
-				}
-			}
+						current_distance = mod_window(current_distance + 1);
 
-			print(tabStatistics_dis);
+						// only the position of the next code is searched, the other ones are only inserted
+						if ((replace_count == 1) && (skip == 0)) addString(current_distance);
+						else if (skip > 0) insertSkipped(current_distance);
+						else if (replace_count > unindexed) insertString(current_distance);
 
-			// System.out.println("-----------------------------------------------");
+						replace_count --;
+					} // End While
 
-			bos = new BinaryOutputStream(new BufferedOutputStream(os));
+					if (gen.size() >= BLOCK_SIZE) flushBlock(false);
 
-			boolean mode_rle = false;
-			int compteur_rle = 0;
-			// System.out.println("generating huffman codes ...");
+				} // End While
+			} // End While
+		}
+		catch (EOFException e) {
+			// end of the input file
+		}
 
-			// next, write huffman statistics for length into the output file
-			for (int i=0; i<len_max; i++) {
-				if (tabStatistics_len[i].frequence>0) {
-					if (mode_rle) {
-						bos.writeBit(0x00,4);
-						bos.writeBit(compteur_rle-1,8); // Pb if more than 256 null codes (?)
-						// System.out.println(0 + "," + compteur_rle);
-						mode_rle = false;
-						compteur_rle = 0;
-					}
+		// working on the remaining buffer
+		// (the strings are compared on the bytes left only, and the positions inside a long string matching are not indexed either)
+		while (look_ahead_bytes > 0) {
+			int unindexed = (replace_count > LOOK_AHEAD_SIZE) ? replace_count : 0;
+
+			while (replace_count > 0) {
+				deleteString(mod_window(current_distance + look_ahead_size));
+				look_ahead_bytes --;
+				current_distance = mod_window(current_distance + 1);
+				finder.max_length = look_ahead_bytes;
+				if ((replace_count == 1) && (skip == 0)) addString(current_distance);
+				else if (skip > 0) insertSkipped(current_distance);
+				else if (replace_count > unindexed) insertString(current_distance);
+				replace_count --;
+			}
 
-					BinaryTree element = tabStatistics_len[i];
-					if (element.nbBits < 15) {
-						bos.writeBit(element.nbBits,4);
-					}
-					else if ((element.nbBits >= 15) && (element.nbBits < 18)) {
-						bos.writeBit(15, 4);
-						bos.writeBit(element.nbBits-15,2); // mode (0-> 15, 1-> 16, 2-> 17, 3-> 18+ bits)
-					}
-					else if (element.nbBits < maxBits) {
-						bos.writeBit(15, 4);
-						bos.writeBit(3, 2);
-						bos.writeBit(element.nbBits-18,2); // mode (0-> 18, 1-> 19 bits)
-					}
-					// System.out.println(element.nbBits);
-				}
-				else {
-					mode_rle = true;
-					compteur_rle ++;
+			if (look_ahead_bytes > 0) {
+				if (skip > 0) {
+					skip --;
+					replace_count = 1;
 				}
+				else if (parser != null) find_optimal();
+				else find_match();
 			}
 
-			if (mode_rle) {
-				bos.writeBit(0x00,4);
-				bos.writeBit(compteur_rle-1,8);
-				// System.out.println(0 + "," + compteur_rle);
-				mode_rle = false;
-				compteur_rle = 0;
-			}
+			if (gen.size() >= BLOCK_SIZE) flushBlock(false);
+		}
 
-			// System.out.println("----------------------------");
-
-			// next, write huffman statistics for distance into the output file
-			for (int i=0; i<dis_max; i++) {
-				if (tabStatistics_dis[i].frequence > 0) {
-					if (mode_rle) {
-						bos.writeBit(0x00,4);
-						bos.writeBit(compteur_rle-1,5);
-						// System.out.println(0 + "," + compteur_rle);
-						mode_rle = false;
-						compteur_rle = 0;
-					}
+		if (parser != null) flushSegment();
 
-					BinaryTree element = tabStatistics_dis[i];
-					bos.writeBit(element.nbBits, 4);
-					// System.out.println(element.nbBits);
-				}
-				else {
-					mode_rle = true;
-					compteur_rle ++;
-				}
-			}
+		// an empty block which is not the last one is a sync flush for the expander (see writeSync) :
+		// the codes were all written by the previous block
+		if (last || (gen.size() > 0)) flushBlock(last);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compress the input stream by chunks, on the threads of the pool (or sequentially without pool).</p>
+		<p>The chunks are read in advance (twice the parallelism of the pool at most),
+		and their blocks are appended bit by bit to the output stream, in the order of the input stream.
+		The frames end with a frame of 0 byte.</p>
+	*/
+	private void compressChunks(InputStream is, BinaryOutputStream out) throws IOException
+	{
+		int max_tasks = (pool == null) ? 1 : 2 * pool.getParallelism();
+		ArrayDeque<ForkJoinTask<Chunk>> tasks = new ArrayDeque<ForkJoinTask<Chunk>>();
+
+		byte[] previous = null;
+		byte[] current = readChunk(is);
+
+		// an empty input stream is a single (empty) last block
+		if ((current == null) && !framed) {
+			allocateWindow(0);
+			compressBlocks(is, out, 0, true);
+			return;
+		}
+
+		while (current != null) {
+			byte[] next = readChunk(is);
 
-			if (mode_rle) {
-				bos.writeBit(0x00,4);
-				bos.writeBit(compteur_rle-1,5);
-				// System.out.println(0 + "," + compteur_rle);
-				mode_rle = false;
-				compteur_rle = 0;
+			ChunkTask task = new ChunkTask(framed ? null : previous, current, framed || (next == null));
+
+			if (pool == null) task.call().writeTo(out, framed);
+			else {
+				tasks.addLast(pool.submit(task));
+				if (tasks.size() >= max_tasks) tasks.removeFirst().join().writeTo(out, framed);
 			}
 
-			// System.out.println("-----------------------------------------------");
+			previous = current;
+			current = next;
+		}
 
-			MatchLength len = null;
-			MatchDistance dis = null;
+		while (!tasks.isEmpty()) tasks.removeFirst().join().writeTo(out, framed);
 
-			BinaryTree node_len = null;
-			BinaryTree node_dis = null;
-			//BinaryTree node_dico = null;
+		if (framed) {
+			out.writeBit(0, 32);
+			out.writeBit(0, 32);
+		}
+	}
 
-			// next, write contains of the "gen" vector into the output file
-			for (Enumeration e = gen.elements(); e.hasMoreElements() ;) {
-				len = (MatchLength) e.nextElement();
-				// System.out.println("length = " + len.value);
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Read the next chunk of the input stream, null at the end of the input stream.</p>
+	*/
+	private byte[] readChunk(InputStream is) throws IOException
+	{
+		return readChunk(is, chunk_size);
+	}
 
-				node_len = tabStatistics_len[len.value];
-				/*
-				if (len.value < 256) System.out.println((char) node_len.codeAscii + " ," + node_len.codeAscii
-										+ " ," + Binary.toBinaryString(node_len.compressCode, node_len.nbBits)) ;
-				*/
-				// first, generating length parameter in all cases
-				bos.writeBit(node_len.compressCode, node_len.nbBits);
+	/**
+		<p>Read the next <code>max_size</code> bytes of the input stream (less at its end), null at the end of the input stream.</p>
+	*/
+	private static byte[] readChunk(InputStream is, int max_size) throws IOException
+	{
+		byte[] chunk = new byte[max_size];
+		int size = 0;
 
-				if ((len.value >= 257) && (len.value < len_max)) {
+		while (size < max_size) {
+			int n = is.read(chunk, size, max_size - size);
+			if (n < 0) break;
+			size += n;
+		}
 
-					// even, generating an extra length parameter
-					if (len.nbExtraBits > 0) bos.writeBit(len.extraValue, len.nbExtraBits);
+		if (size == 0) return null;
+		return (size == max_size) ? chunk : Arrays.copyOf(chunk, size);
+	}
 
-					// next, generating distance parameter
-					dis = (MatchDistance) e.nextElement();
-					// System.out.println("distance = " + dis.value);
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>A Chunk hold the compressed blocks of a chunk of <code>size</code> bytes, the last byte may be incomplete.</p>
+	*/
+	static class Chunk {
+		int size;
+		byte[] data;
+		long bits;
+
+		Chunk (int _size, byte[] _data, long _bits)
+		{
+			size = _size;
+			data = _data;
+			bits = _bits;
+		}
 
-					// the distance is a dictionnary entrie
-					/*
-					if (len.value == 280) {
-						node_dico = Dico.tabStatistics_dico[dis.value];
-						//System.out.println("dico = " + node_dico.word);
-						bos.writeBit(node_dico.compressCode, node_dico.nbBits);
-					}
-					*/
+		void writeTo(BinaryOutputStream out, boolean framed) throws IOException
+		{
+			if (framed) {
+				out.writeBit(size, 32);
+				out.writeBit(data.length, 32);
+				out.write(data);
+			}
+			else out.writeBits(data, bits);
+		}
+	}
 
-					// the distance is a reference on the back window
+	/**
+		<p>A ChunkTask compress a chunk with its own compressor.</p>
+	*/
+	class ChunkTask implements Callable<Chunk> {
+		byte[] previous;
+		byte[] current;
+		boolean last;
+
+		ChunkTask (byte[] _previous, byte[] _current, boolean _last)
+		{
+			previous = _previous;
+			current = _current;
+			last = _last;
+		}
 
-					// BREAK_EVEN case
-					if (len.value == 257) {
-						bos.writeBit(dis.value, dis.nbBits);
-					}
+		public Chunk call() throws IOException
+		{
+			InputStream in = new ByteArrayInputStream(current);
+			int skip = 0;
 
-					// other cases
-					else {
-						node_dis = tabStatistics_dis[dis.value];
-						bos.writeBit(node_dis.compressCode, node_dis.nbBits);
-						// even, generating an extra distance parameter
-						if (dis.nbExtraBits > 0) bos.writeBit(dis.extraValue, dis.nbExtraBits);
-					}
-				}
+			if (prime && (previous != null)) {
+				skip = Math.min(Math.min(previous.length, prime_size), (1 << window_bits) - look_ahead_size);
+				in = new SequenceInputStream(new ByteArrayInputStream(previous, previous.length - skip, skip), in);
 			}
 
-			// writing a code for end of file
-			node_len = tabStatistics_len[256];
-			bos.writeBit(node_len.compressCode, node_len.nbBits);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(current.length / 2 + 1024);
+			BinaryOutputStream out = new BinaryOutputStream(baos);
 
-			bos.writeEOF();
+			LZCompress compress = new LZCompress(level, level.createFinder(), null);
+			compress.setDico(dico);
+			if (look_ahead_size != LOOK_AHEAD_SIZE) compress.setLongMatches(true);
+			// the preset dictionnary is before the first chunk only (or before each frame)
+			if (previous == null) compress.preset = preset;
 
-			bos.flush();
-		 }
-		 catch (Exception e) {
-			 System.out.println("Compress " + e);
-		 }
-	}
+			// the window of a chunk only has to hold the chunk and the bytes before it
+			long size = 1 + skip + current.length + look_ahead_size + ((compress.preset != null) ? compress.preset.length : 0);
+			compress.setWindow(window_bits, Math.min(window_bits, MatchCodes.windowBits(size)));
+			compress.compressBlocks(in, out, skip, last);
+
+			long bits = out.getBits();
+			out.writeEOF();
+			out.flush();
 
+			return new Chunk(current.length, baos.toByteArray(), bits);
+		}
+	}
 
 	// ---------------------------------------------------------------------------------------------
 	/**
-		<p>find_match generate into the output file the code/group of bits associated to the string matching :</p>
-		<li>generate a window string matching (length and distance in the binary tree representing the back window).</li>
-		<li>generate a dictionnary string matching.</li>
-		<li>generate a single ascii character.</li>
+		<p>Write a block into the output file : a bit set for the last block, the Huffman code lengths of the block,
+		the codes generated since the previous block, and a code for end of block.</p>
+		<p>The statistics are cleared for the next block.</p>
 	*/
-	public void find_match () {
+	private void flushBlock(boolean last) throws IOException
+	{
+		encoder_len.freq[256] ++;
 
-		if (match_length > look_ahead_bytes)	match_length = look_ahead_bytes;
+		// build the huffman codes of the block
+		encoder_len.build(huffman, MAX_CODE_BITS);
+		encoder_dis.build(huffman, MAX_CODE_BITS);
 
-		if (match_length >= BREAK_EVEN) {
-					//System.out.println("match_length = " + match_length);
-					//System.out.println("match_distance = " + match_distance);
-
-					if (match_length == 3) {
-						tabStatistics_len[257].frequence ++;
-						gen.addElement(new MatchLength(257,0,0));
-						gen.addElement(new MatchDistance(match_distance-1,12));
-
-						// printing the match string
-						String word = "";
-						for (int i=0; i < match_length; i++) {
-							// if (window[mod_window(current_distance + i)] >= 256) word = word + Dico.tabStatistics_dico[(int) (window[mod_window(current_distance + i)]-256)].word;
-							// else
-							word = word + (char) window[mod_window(current_distance + i)];
-						}
-						System.out.println(word + "," + match_length + "," + match_distance);
+		if (trace != null) {
+			trace.tableBuilt(TraceListener.LENGTHS, encoder_len.lengths());
+			trace.tableBuilt(TraceListener.DISTANCES, encoder_dis.lengths());
+		}
 
-						replace_count = match_length;
-						return;
-					}
-					else if (match_length == 4) {
-						tabStatistics_len[258].frequence ++;
-						gen.addElement(new MatchLength(258,0,0));
-					}
-					else if (match_length == 5) {
-						tabStatistics_len[259].frequence ++;
-						gen.addElement(new MatchLength(259,0,0));
-					}
-					else if (match_length == 6) {
-						tabStatistics_len[260].frequence ++;
-						gen.addElement(new MatchLength(260,0,0));
-					}
-					else if (match_length == 7) {
-						tabStatistics_len[261].frequence ++;
-						gen.addElement(new MatchLength(261,0,0));
-					}
-					else if (match_length == 8) {
-						tabStatistics_len[262].frequence ++;
-						gen.addElement(new MatchLength(262,0,0));
-					}
-					else if (match_length == 9) {
-						tabStatistics_len[263].frequence ++;
-						gen.addElement(new MatchLength(263,0,0));
-					}
-					else if (match_length == 10) {
-						tabStatistics_len[264].frequence ++;
-						gen.addElement(new MatchLength(264,0,0));
-					}
-					else if ((match_length >= 11) && (match_length <= 12)) {
-						tabStatistics_len[265].frequence ++;
-						gen.addElement(new MatchLength(265,match_length-11,1));
-					}
-					else if ((match_length >= 13) && (match_length <= 14)) {
-						tabStatistics_len[266].frequence ++;
-						gen.addElement(new MatchLength(266,match_length-13,1));
-					}
-					else if ((match_length >= 15) && (match_length <= 16)) {
-						tabStatistics_len[267].frequence ++;
-						gen.addElement(new MatchLength(267,match_length-15,1));
-					}
-					else if ((match_length >= 17) && (match_length <= 18)) {
-						tabStatistics_len[268].frequence ++;
-						gen.addElement(new MatchLength(268,match_length-17,1));
-					}
-					else if ((match_length >= 19) && (match_length <= 22)) {
-						tabStatistics_len[269].frequence ++;
-						gen.addElement(new MatchLength(269,match_length-19,2));
-					}
-					else if ((match_length >= 23) && (match_length <= 26)) {
-						tabStatistics_len[270].frequence ++;
-						gen.addElement(new MatchLength(270,match_length-23,2));
-					}
-					else if ((match_length >= 27) && (match_length <= 30)) {
-						tabStatistics_len[271].frequence ++;
-						gen.addElement(new MatchLength(271,match_length-27,2));
-					}
-					else if ((match_length >= 31) && (match_length <= 34)) {
-						tabStatistics_len[272].frequence ++;
-						gen.addElement(new MatchLength(272,match_length-31,2));
-					}
-					else if ((match_length >= 35) && (match_length <= 42)) {
-						tabStatistics_len[273].frequence ++;
-						gen.addElement(new MatchLength(273,match_length-35,3));
-					}
-					else if ((match_length >= 43) && (match_length <= 50)) {
-						tabStatistics_len[274].frequence ++;
-						gen.addElement(new MatchLength(274,match_length-43,3));
-					}
+		bos.writeBit(last ? 1 : 0, 1);
 
-					else if ((match_length >= 51) && (match_length <= 58)) {
-						tabStatistics_len[275].frequence ++;
-						gen.addElement(new MatchLength(275,match_length-51,3));
-					}
-					else if ((match_length >= 59) && (match_length <= 66)) {
-						tabStatistics_len[276].frequence ++;
-						gen.addElement(new MatchLength(276,match_length-59,3));
-					}
-					else if ((match_length >= 67) && (match_length <= 98)) {
-						tabStatistics_len[277].frequence ++;
-						gen.addElement(new MatchLength(277,match_length-67,5));
-					}
-					else if ((match_length >= 99) && (match_length <= 130)) {
-						tabStatistics_len[278].frequence ++;
-						gen.addElement(new MatchLength(278,match_length-99,5));
-					}
-					else if ((match_length >= 131) && (match_length <= 257)) {
-						tabStatistics_len[279].frequence ++;
-						gen.addElement(new MatchLength(279,match_length-131,7));
-					}
-					else {
-						System.out.println("match_length ? " + match_length);
-					}
+		writeTables();
 
-					if ((match_distance >= 1) && (match_distance <= 8)) {
-						tabStatistics_dis[0].frequence ++;
-						gen.addElement(new MatchDistance(0,match_distance,match_distance-1,3));
-					}
-					else if ((match_distance >= 9) && (match_distance <= 16)) {
-						tabStatistics_dis[1].frequence ++;
-						gen.addElement(new MatchDistance(1,match_distance,match_distance-9,3));
-					}
-					else if ((match_distance >= 17) && (match_distance <= 24)) {
-						tabStatistics_dis[2].frequence ++;
-						gen.addElement(new MatchDistance(2,match_distance,match_distance-17,3));
-					}
-					else if ((match_distance >= 25) && (match_distance <= 32)) {
-						tabStatistics_dis[3].frequence ++;
-						gen.addElement(new MatchDistance(3,match_distance,match_distance-25,3));
-					}
-					else if ((match_distance >= 33) && (match_distance <= 48)) {
-						tabStatistics_dis[4].frequence ++;
-						gen.addElement(new MatchDistance(4,match_distance,match_distance-33,4));
-					}
-					else if ((match_distance >= 49) && (match_distance <= 64)) {
-						tabStatistics_dis[5].frequence ++;
-						gen.addElement(new MatchDistance(5,match_distance,match_distance-49,4));
-					}
-					else if ((match_distance >= 65) && (match_distance <= 96)) {
-						tabStatistics_dis[6].frequence ++;
-						gen.addElement(new MatchDistance(6,match_distance,match_distance-65,5));
-					}
-					else if ((match_distance >= 97) && (match_distance <= 128)) {
-						tabStatistics_dis[7].frequence ++;
-						gen.addElement(new MatchDistance(7,match_distance,match_distance-97,5));
-					}
-					else if ((match_distance >= 129) && (match_distance <= 192)) {
-						tabStatistics_dis[8].frequence ++;
-						gen.addElement(new MatchDistance(8,match_distance,match_distance-129,6));
-					}
-					else if ((match_distance >= 193) && (match_distance <= 256)) {
-						tabStatistics_dis[9].frequence ++;
-						gen.addElement(new MatchDistance(9,match_distance,match_distance-193,6));
-					}
-					else if ((match_distance >= 257) && (match_distance <= 384)) {
-						tabStatistics_dis[10].frequence ++;
-						gen.addElement(new MatchDistance(10,match_distance,match_distance-257,7));
-					}
-					else if ((match_distance >= 385) && (match_distance <= 512)) {
-						tabStatistics_dis[11].frequence ++;
-						gen.addElement(new MatchDistance(11,match_distance,match_distance-385,7));
-					}
-					else if ((match_distance >= 513) && (match_distance <= 768)) {
-						tabStatistics_dis[12].frequence ++;
-						gen.addElement(new MatchDistance(12,match_distance,match_distance-513,8));
-					}
-					else if ((match_distance >= 769) && (match_distance <= 1024)) {
-						tabStatistics_dis[13].frequence ++;
-						gen.addElement(new MatchDistance(13,match_distance,match_distance-769,8));
-					}
-					else if ((match_distance >= 1025) && (match_distance <= 1536)) {
-						tabStatistics_dis[14].frequence ++;
-						gen.addElement(new MatchDistance(14,match_distance,match_distance-1025,9));
-					}
-					else if ((match_distance >= 1537) && (match_distance <= 2048)) {
-						tabStatistics_dis[15].frequence ++;
-						gen.addElement(new MatchDistance(15,match_distance,match_distance-1537,9));
-					}
-					else if ((match_distance >= 2049) && (match_distance <= 3072)) {
-						tabStatistics_dis[16].frequence ++;
-						gen.addElement(new MatchDistance(16,match_distance,match_distance-2049,10));
-					}
-					else if ((match_distance >= 3073) && (match_distance <= 4096)) {
-						tabStatistics_dis[17].frequence ++;
-						gen.addElement(new MatchDistance(17,match_distance,match_distance-3073,10));
-					}
-					else if ((match_distance >= 4097) && (match_distance <= 6144)) {
-						tabStatistics_dis[18].frequence ++;
-						gen.addElement(new MatchDistance(18,match_distance,match_distance-4097,11));
-					}
-					else if ((match_distance >= 6145) && (match_distance <= 8192)) {
-						tabStatistics_dis[19].frequence ++;
-						gen.addElement(new MatchDistance(19,match_distance,match_distance-6145,11));
-					}
+		int[] code_len = encoder_len.code;
+		byte[] length_len = encoder_len.length;
+		int[] code_dis = encoder_dis.code;
+		byte[] length_dis = encoder_dis.length;
 
-					else if ((match_distance >= 8193) && (match_distance <= 12288)) {
-						tabStatistics_dis[20].frequence ++;
-						gen.addElement(new MatchDistance(20,match_distance,match_distance-8193,12));
-					}
-					else if ((match_distance >= 12289) && (match_distance <= 16384)) {
-						tabStatistics_dis[21].frequence ++;
-						gen.addElement(new MatchDistance(21,match_distance,match_distance-12289,12));
-					}
-					else if ((match_distance >= 16385) && (match_distance <= 20480)) {
-						tabStatistics_dis[22].frequence ++;
-						gen.addElement(new MatchDistance(22,match_distance,match_distance-16385,12));
-					}
-					else if ((match_distance >= 20481) && (match_distance <= 24576)) {
-						tabStatistics_dis[23].frequence ++;
-						gen.addElement(new MatchDistance(23,match_distance,match_distance-20481,12));
-					}
-					else if ((match_distance >= 24577) && (match_distance <= 28672)) {
-						tabStatistics_dis[24].frequence ++;
-						gen.addElement(new MatchDistance(24,match_distance,match_distance-24577,12));
-					}
-					else if ((match_distance >= 28673) && (match_distance <= 32768)) {
-						tabStatistics_dis[25].frequence ++;
-						gen.addElement(new MatchDistance(25,match_distance,match_distance-28673,12));
-					}
+		// next, write contains of the "gen" buffer into the output file
+		int size = gen.size();
+		for (int k=0; k<size; k++) {
+			long len = gen.get(k);
+			int value = TokenBuffer.symbol(len);
+			// System.out.println("length = " + value);
 
-					else if ((match_distance >= 32769) && (match_distance <= 36864)) {
-						tabStatistics_dis[26].frequence ++;
-						gen.addElement(new MatchDistance(26,-1,match_distance-32769,12));
-					}
-					else if ((match_distance >= 36865) && (match_distance <= 40960)) {
-						tabStatistics_dis[27].frequence ++;
-						gen.addElement(new MatchDistance(27,-1,match_distance-36865,12));
-					}
-					else if ((match_distance >= 40961) && (match_distance <= 45056)) {
-						tabStatistics_dis[28].frequence ++;
-						gen.addElement(new MatchDistance(28,-1,match_distance-40961,12));
-					}
-					else if ((match_distance >= 45057) && (match_distance <= 49152)) {
-						tabStatistics_dis[29].frequence ++;
-						gen.addElement(new MatchDistance(29,-1,match_distance-45057,12));
-					}
-					else if ((match_distance >= 49153) && (match_distance <= 57344)) {
-						tabStatistics_dis[30].frequence ++;
-						gen.addElement(new MatchDistance(30,-1,match_distance-49153,13));
-					}
-					else if ((match_distance >= 57345) && (match_distance <= 65536)) {
-						tabStatistics_dis[31].frequence ++;
-						gen.addElement(new MatchDistance(31,-1,match_distance-57345,13));
-					}
-					else {
-						System.out.println("match_distance ? " + match_distance);
-					}
+			// first, generating length parameter in all cases
+			bos.writeBit(code_len[value], length_len[value]);
 
-					// printing the match string
-					String word = "";
-					for (int i=0; i < match_length; i++) {
-						// if (window[mod_window(current_distance + i)] >= 256) word = word + Dico.tabStatistics_dico[(int) (window[mod_window(current_distance + i)]-256)].word;
-						// else
-						word = word + (char) window[mod_window(current_distance + i)];
-					}
-					System.out.println(word + "," + match_length + "," + match_distance);
+			// a word of the dictionnary
+			if (value == MatchCodes.WORD_SYMBOL) {
+				int word = TokenBuffer.extraValue(len);
+				bos.writeBit(dico.compressCode(word), dico.nbBits(word));
+			}
+
+			else if ((value >= 257) && (value < encoder_len.n)) {
+
+				// even, generating an extra length parameter
+				if (TokenBuffer.nbExtraBits(len) > 0) bos.writeBit(TokenBuffer.extraValue(len), TokenBuffer.nbExtraBits(len));
+
+				// next, generating distance parameter
+				long dis = gen.get(++k);
+
+				// the distance is a reference on the back window
+
+				// BREAK_EVEN case
+				if (TokenBuffer.symbol(dis) == TokenBuffer.NO_SYMBOL) {
+					bos.writeBit(TokenBuffer.extraValue(dis), TokenBuffer.nbExtraBits(dis));
+				}
 
-					replace_count = match_length;
-					return;
+				// other cases
+				else {
+					int symbol = TokenBuffer.symbol(dis);
+					bos.writeBit(code_dis[symbol], length_dis[symbol]);
+					// even, generating an extra distance parameter
+					if (TokenBuffer.nbExtraBits(dis) > 0) bos.writeBit(TokenBuffer.extraValue(dis), TokenBuffer.nbExtraBits(dis));
+				}
+			}
 		}
 
-		replace_count = 1;
-		//System.out.println("current_distance = " + current_distance);
+		// writing a code for end of block
+		bos.writeBit(code_len[256], length_len[256]);
 
-		int codeAscii = window[current_distance];
-		//System.out.println("codeAscii = " + codeAscii);
+		// clear the statistics for the next block
+		encoder_len.clear();
+		encoder_dis.clear();
 
-		// generate a single ascii character.
-		tabStatistics_len[codeAscii].frequence ++;
-		gen.addElement(new MatchLength(codeAscii));
-		System.out.println((char) window[current_distance] + "," + codeAscii);
+		if (trace != null) trace.blockFinished(last, size, bos.getBits());
 
+		gen.clear();
 	}
 
-
 	// ---------------------------------------------------------------------------------------------
-	private int mod_window(int a)
+	/**
+		<p>Write an empty block (not the last one) then the bits up to the next byte boundary, after the blocks written so far :
+		the expander returns the bytes of these blocks without reading further (a sync flush, see LZOutputStream.flush).</p>
+		<p>The compression never writes another empty block which is not the last one.</p>
+	*/
+	void writeSync(BinaryOutputStream out) throws IOException
 	{
-		return (int) (a & (WINDOW_SIZE - 1));
+		bos = out;
+		flushBlock(false);
+		out.writeEOF();
 	}
 
-
 	// ---------------------------------------------------------------------------------------------
 	/**
-		<p>Search for a string matching in the tree (on the back window).</p>
+		<p>Write the Huffman code lengths of the block, in a compact form (a run of unused symbols is a single code).</p>
 	*/
-	private void addString(int new_node)
+	private void writeTables() throws IOException
 	{
-		int test_node = tree_larger_child[ TREE_ROOT ];
-		int delta = 0;
-		int child;
-		int i = 0;
-
-		match_length = 0;
-		match_distance = 0;
-		// match_node = 0;
-
-		while (true) {
-
-			// delta = window[ mod_window(new_node + match_length-1) ] - window[ mod_window(test_node + match_length-1) ];
-			// int j = 0;
-
-			// variable "i" will give the length of the string matching.
-			for (i=0; i < LOOK_AHEAD_SIZE; i++) {
-				delta = window[ mod_window(new_node + i) ] - window[ mod_window(test_node + i) ];
-				if (delta != 0) break;
-				/*
-				if (window[ mod_window(test_node + i) ] >= 256) {
-					int ref = window[ mod_window(test_node + i) ] - 256;
-					j = j + tabStatistics_dico[ref].word.length();
+		boolean mode_rle = false;
+		int compteur_rle = 0;
+		// System.out.println("generating huffman codes ...");
+
+		// next, write huffman statistics for length into the output file
+		for (int i=0; i<encoder_len.n; i++) {
+			if (encoder_len.freq[i] > 0) {
+				if (mode_rle) {
+					bos.writeBit(0x00,4);
+					bos.writeBit(compteur_rle-1,8); // Pb if more than 256 null codes (?)
+					// System.out.println(0 + "," + compteur_rle);
+					mode_rle = false;
+					compteur_rle = 0;
 				}
-				else j++;
-				*/
-			}
 
-			// if i is BREAK_EVEN only near string matching are accepted (in the last 4096 bytes).
-			if ((i == BREAK_EVEN) && (mod_window(current_distance - test_node) > 4096)) i = 0;
-
-			// if i is greater than previous match_length, save the match_length and match_distance variables of the string matching.
-			if ((i >= BREAK_EVEN) && (i >= match_length)) {
-				match_length = i;
-				match_distance = mod_window(current_distance - test_node);
-				// match_node = j;
-				if (match_length >= LOOK_AHEAD_SIZE) {
-					replaceNode(test_node, new_node);
-					return;
+				int nbBits = encoder_len.length[i];
+				if (nbBits < 15) {
+					bos.writeBit(nbBits,4);
 				}
+				else if ((nbBits >= 15) && (nbBits < 18)) {
+					bos.writeBit(15, 4);
+					bos.writeBit(nbBits-15,2); // mode (0-> 15, 1-> 16, 2-> 17, 3-> 18+ bits)
+				}
+				else if (nbBits < maxBits) {
+					bos.writeBit(15, 4);
+					bos.writeBit(3, 2);
+					bos.writeBit(nbBits-18,2); // mode (0-> 18, 1-> 19 bits)
+				}
+				// System.out.println(nbBits);
 			}
+			else {
+				mode_rle = true;
+				compteur_rle ++;
+			}
+		}
 
-			// searching into the huffman tree (on the back window) for a new string matching.
-			if (delta >= 0)	{
-				child = tree_larger_child[ test_node ];
+		if (mode_rle) {
+			bos.writeBit(0x00,4);
+			bos.writeBit(compteur_rle-1,8);
+			// System.out.println(0 + "," + compteur_rle);
+			mode_rle = false;
+			compteur_rle = 0;
+		}
 
-				if (child == UNUSED) {
-					tree_larger_child[ test_node ] = new_node;
-					tree_parent[ new_node ] = test_node;
-					tree_larger_child[ new_node ] = UNUSED;
-					tree_smaller_child[ new_node ] = UNUSED;
-					return;
+		// System.out.println("----------------------------");
+
+		// next, write huffman statistics for distance into the output file
+		// (a run of unused symbols is written on 5 bits, so a longer run is split)
+		for (int i=0; i<encoder_dis.n; i++) {
+			if (encoder_dis.freq[i] > 0) {
+				if (mode_rle) {
+					bos.writeBit(0x00,4);
+					bos.writeBit(compteur_rle-1,5);
+					// System.out.println(0 + "," + compteur_rle);
+					mode_rle = false;
+					compteur_rle = 0;
 				}
+
+				bos.writeBit(encoder_dis.length[i], 4);
+				// System.out.println(nbBits);
 			}
-			else	{
-				child = tree_smaller_child[ test_node ];
-
-				if (child == UNUSED) {
-					tree_smaller_child[ test_node ] = new_node;
-					tree_parent[ new_node ] = test_node;
-					tree_larger_child[ new_node ] = UNUSED;
-					tree_smaller_child[ new_node ] = UNUSED;
-					return;
+			else {
+				mode_rle = true;
+				compteur_rle ++;
+
+				if (compteur_rle == 32) {
+					bos.writeBit(0x00,4);
+					bos.writeBit(compteur_rle-1,5);
+					mode_rle = false;
+					compteur_rle = 0;
 				}
 			}
+		}
 
-			test_node = child;
+		if (mode_rle) {
+			bos.writeBit(0x00,4);
+			bos.writeBit(compteur_rle-1,5);
+			// System.out.println(0 + "," + compteur_rle);
+			mode_rle = false;
+			compteur_rle = 0;
 		}
+
 	}
 
 
+
 	// ---------------------------------------------------------------------------------------------
 	/**
-		<p>Search for a string matching in the tree (on the back window).</p>
-		<p>For lazy matching only.</p>
+		<p>find_match generate into the output file the code/group of bits associated to the string matching :</p>
+		<li>generate a window string matching (length and distance in the binary tree representing the back window).</li>
+		<li>generate a dictionnary string matching.</li>
+		<li>generate a single ascii character.</li>
 	*/
-	private void searchString(int new_node)
-	{
-		int test_node = tree_larger_child[ TREE_ROOT ];
-		int delta = 0;
-		int child;
-		int i;
+	public void find_match () {
 
-		match_length = 0;
-		match_distance = 0;
-		// match_node = 0;
+		if (match_length > look_ahead_bytes)	match_length = look_ahead_bytes;
 
-		while (true) {
+		// at the end of the input, a longer string matching may be cut to BREAK_EVEN bytes : it must be a near one
+		if ((match_length == BREAK_EVEN) && (match_distance > MatchFinder.NEAR_DISTANCE)) match_length = 0;
 
-			// delta = window[ mod_window(new_node + match_length-1) ] - window[ mod_window(test_node + match_length-1) ];
-			// int j = 0;
+		if ((dico != null) && find_word()) return;
 
-			for (i=0; i < LOOK_AHEAD_SIZE; i++) {
-				delta = window[ mod_window(new_node + i) ] - window[ mod_window(test_node + i) ];
-				if (delta != 0) break;
-				/*
-				if (window[ mod_window(test_node + i) ] >= 256) {
-					int ref = window[ mod_window(test_node + i) ] - 256;
-					j = j + tabStatistics_dico[ref].word.length();
-				}
-				else j++;
-				*/
-			}
+		if (match_length >= BREAK_EVEN) {
+			//System.out.println("match_length = " + match_length);
+			//System.out.println("match_distance = " + match_distance);
 
-			if ((i == BREAK_EVEN) && (mod_window(current_distance - test_node) > 4096)) i = 0;
+			gen_match(match_length, match_distance);
 
-			if ((i >= BREAK_EVEN) && (i >= match_length)) {
-				match_length = i;
-				match_distance = mod_window(current_distance - test_node);
-				// match_node = j;
-				if (match_length >= LOOK_AHEAD_SIZE) {
-					return;
-				}
-			}
+			replace_count = match_length;
+			return;
+		}
 
-			if (delta >= 0)	{
-				child = tree_larger_child[ test_node ];
+		find_literal();
+	}
 
-				if (child == UNUSED) {
-					return;
-				}
+	/**
+		<p>Generate the longest word of the dictionnary starting at the current position,
+		when it saves more bits than the string matching (estimated with static costs, the Huffman codes of the block are not known yet).</p>
+		<p>Returns false when no word is generated.</p>
+	*/
+	private boolean find_word()
+	{
+		DoubleArrayTrie trie = dico.trie();
+		int state = DoubleArrayTrie.ROOT;
+		int word = -1;
+		int word_length = 0;
+
+		// most positions do not start with a letter, and stop on the first byte
+		for (int i=0; i<look_ahead_bytes; i++) {
+			state = trie.next(state, window[mod_window(current_distance + i)] ^ 0x80);
+			if (state < 0) break;
+
+			if (trie.word(state) >= 0) {
+				word = trie.word(state);
+				word_length = i + 1;
 			}
-			else	{
-				child = tree_smaller_child[ test_node ];
+		}
 
-				if (child == UNUSED) {
-					return;
-				}
+		if (word < 0) return false;
+
+		int word_saving = word_length * LITERAL_BITS - (WORD_SYMBOL_BITS + dico.nbBits(word));
+		if (word_saving <= 0) return false;
+
+		if (match_length >= BREAK_EVEN) {
+			int match_bits;
+			if (match_length == BREAK_EVEN) match_bits = SYMBOL_BITS + MatchCodes.BREAK_EVEN_DISTANCE_BITS;
+			else {
+				int symbol = MatchCodes.distanceSymbol(match_distance);
+				match_bits = 2 * SYMBOL_BITS + MatchCodes.lengthExtraBits(match_length) + MatchCodes.DISTANCE_EXTRA[symbol];
 			}
 
-			test_node = child;
+			if (match_length * LITERAL_BITS - match_bits >= word_saving) return false;
 		}
+
+		gen_word(word, word_length);
+
+		replace_count = word_length;
+		return true;
 	}
 
-	// ---------------------------------------------------------------------------------------------
-	private void deleteString(int p)
+	/**
+		<p>Generate the single character of the current position.</p>
+	*/
+	private void find_literal()
 	{
-		int replacement;
-
-		if (tree_parent[ p ] == UNUSED)	return;
+		replace_count = 1;
+		//System.out.println("current_distance = " + current_distance);
 
-		if (tree_larger_child[ p ] == UNUSED)	contractNode(p, tree_smaller_child[ p ]);
-		else if (tree_smaller_child[ p ] == UNUSED)	contractNode(p, tree_larger_child[ p ]);
-		else {
-				replacement = findNextNode(p);
-				deleteString(replacement);
-				replaceNode(p, replacement);
-		}
+		gen_literal(window[current_distance]);
 	}
 
-
 	// ---------------------------------------------------------------------------------------------
-	private void contractNode(int old_node, int new_node)
+	/**
+		<p>Add the current position to the segment of the optimal parsing, with its string matchings and its words
+		(its codes are generated with the codes of the whole segment, once the segment is full).</p>
+		<p>A string matching of nice_length bytes is generated at once, after the codes of the segment.</p>
+	*/
+	private void find_optimal()
 	{
-		tree_parent[ new_node ] = tree_parent[ old_node ];
+		if (match_length > look_ahead_bytes)	match_length = look_ahead_bytes;
 
-		if (tree_larger_child[ tree_parent[ old_node ] ] == old_node) {
-			tree_larger_child[ tree_parent[ old_node ] ] = new_node;
-		}
-		else {
-			tree_smaller_child[ tree_parent[ old_node ] ] = new_node;
+		if (match_length >= level.nice_length) {
+			flushSegment();
+			find_match();
+			return;
 		}
 
-		tree_parent[ old_node ] = UNUSED;
-	}
+		parser.add(window[current_distance], finder, look_ahead_bytes);
 
+		if (dico != null) {
+			DoubleArrayTrie trie = dico.trie();
+			int state = DoubleArrayTrie.ROOT;
 
-	// ---------------------------------------------------------------------------------------------
-	private void replaceNode(int old_node, int new_node)
-	{
-		int parent = tree_parent[ old_node ];
+			for (int i=0; i<look_ahead_bytes; i++) {
+				state = trie.next(state, window[mod_window(current_distance + i)] ^ 0x80);
+				if (state < 0) break;
 
-		if (tree_smaller_child[ parent ] == old_node) {
-			tree_smaller_child[ parent ] = new_node;
-		}
-		else {
-			tree_larger_child[ parent ] = new_node;
+				if (trie.word(state) >= 0) parser.addWord(trie.word(state), i + 1);
+			}
 		}
 
-		tree_parent[ new_node ] = tree_parent[ old_node ];
-		tree_smaller_child[ new_node ] = tree_smaller_child [ old_node ];
-		tree_larger_child[ new_node ] = tree_larger_child [ old_node ];
-
-		tree_parent[ tree_smaller_child[ new_node ] ] = new_node;
-		tree_parent[ tree_larger_child[ new_node ] ] = new_node;
-		tree_parent[ old_node ] = UNUSED;
+		replace_count = 1;
+		if (parser.isFull()) flushSegment();
 	}
 
-
-	// ---------------------------------------------------------------------------------------------
-	private int findNextNode(int node)
+	/**
+		<p>Generate the codes of the cheapest path of the segment of the optimal parsing, then clear the segment.</p>
+	*/
+	private void flushSegment()
 	{
-		int next = tree_smaller_child[ node ];
+		if (parser.size() == 0) return;
+
+		parser.parse(encoder_len, encoder_dis);
 
-		while (tree_larger_child[ next ] != UNUSED) {
-			next = tree_larger_child[ next ];
+		int p = 0;
+		for (int k=0; k<parser.steps; k++) {
+			int length = parser.step_length[k];
+			int distance = parser.step_distance[k];
+
+			if (length == 1) gen_literal(parser.literal(p));
+			else if (distance < 0) gen_word(-1 - distance, length);
+			else gen_match(length, distance);
+
+			p += length;
 		}
 
-		return next;
+		parser.clear();
 	}
 
-
+	// ---------------------------------------------------------------------------------------------
 	/**
-		<p>Reading the next character from the input file.</p>
-		<p>Here, an upper to lower case transformation code is operated on the base text using a escape context code.</p>
+		<p>Generate a single character (its symbol, the byte + 128).</p>
 	*/
-	// ---------------------------------------------------------------------------------------------
-	private int readNext() throws EOFException {
-		try {
-			return (bis.readByte() + 128);
+	private void gen_literal(int codeAscii)
+	{
+		// generate a single ascii character.
+		encoder_len.freq[codeAscii] ++;
+		gen.add(codeAscii);
+		if (trace != null) trace.literal((codeAscii - 128) & 0xFF);
+	}
 
+	/**
+		<p>Generate a string matching : its length code and its distance code.</p>
+	*/
+	private void gen_match(int length, int distance)
+	{
+		if (length == BREAK_EVEN) {
+			encoder_len.freq[MatchCodes.BREAK_EVEN_SYMBOL] ++;
+			gen.add(MatchCodes.BREAK_EVEN_SYMBOL);
+			gen.add(TokenBuffer.NO_SYMBOL, distance-1, MatchCodes.BREAK_EVEN_DISTANCE_BITS);
 		}
-		catch (Exception e) {
-			throw new EOFException();
+		else {
+			// (a length of more than 258 bytes is the symbol 281, its extra bits are its number of bits then the length)
+			int symbol = MatchCodes.lengthSymbol(length);
+			encoder_len.freq[symbol] ++;
+			gen.add(symbol, MatchCodes.lengthExtra(length), MatchCodes.lengthExtraBits(length));
+
+			symbol = MatchCodes.distanceSymbol(distance);
+			encoder_dis.freq[symbol] ++;
+			gen.add(symbol, distance - MatchCodes.DISTANCE_BASE[symbol], MatchCodes.DISTANCE_EXTRA[symbol]);
 		}
-	}
 
-	// ---------------------------------------------------------------------------------
-	public int reverse(int value, int size) {
-		int result = 0x00;
-		for (int i=0; i<size; i++) {
-			result = (result << 1 ) | ((value >> i) & 0x01);
-		}
-		return result;
+		if (trace != null) trace.match(length, distance);
 	}
 
-	// ---------------------------------------------------------------------------------
-	public void convert_tree_to_code(BinaryTree tree,
-								 	int nbBits)
+	/**
+		<p>Generate a word of the dictionnary.</p>
+	*/
+	private void gen_word(int word, int length)
 	{
-		if (tree.isLeafNode()) {
-			tree.nbBits = nbBits;
-			// tree.toString();
-			count[nbBits]++;
-			return;
-		}
-
-		nbBits ++;
-
-		convert_tree_to_code(tree.node_0, nbBits);
-		convert_tree_to_code(tree.node_1, nbBits);
+		encoder_len.freq[MatchCodes.WORD_SYMBOL] ++;
+		gen.add(MatchCodes.WORD_SYMBOL, word, 0);
+		if (trace != null) trace.word(word, length);
 	}
 
 
-	// -----------------------------------------------------------------------------
-	static public void sort(Vector list, int low, int high)
+	// ---------------------------------------------------------------------------------------------
+	private int mod_window(int a)
 	{
-		if (!list.isEmpty()) {
-			BinaryTree previous = null;
-			BinaryTree current = null;
-
-			int l = low;
-			int h = high;
-			int pivot = ((BinaryTree) list.elementAt((low + high) / 2)).frequence;
-
-			while (l <= h) {
-				while (((BinaryTree) list.elementAt(l)).frequence < pivot) l++;
-				while (pivot < ((BinaryTree) list.elementAt(h)).frequence) h--;
+		return (int) (a & (window_size - 1));
+	}
 
-				if (l <= h) {
 
-					previous = (BinaryTree) list.elementAt(l);
-					current  = (BinaryTree) list.elementAt(h);
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Search for a string matching on the back window and add the current string to the match finder.</p>
+	*/
+	private void addString(int new_node)
+	{
+		finder.addString(new_node);
+		match_length = finder.match_length;
+		match_distance = finder.match_distance;
+	}
 
-					list.removeElementAt(l);
-					list.insertElementAt(current,l);
 
-					list.removeElementAt(h);
-					list.insertElementAt(previous,h);
+	/**
+		<p>Add the current string to the match finder, without searching for a string matching
+		(a position inside a string matching already generated, or a byte of the back window only).</p>
+	*/
+	private void insertString(int new_node)
+	{
+		finder.insertString(new_node);
+	}
 
-					l++;
-					h--;
-				}
-			}
+	/**
+		<p>Add a skipped byte to the match finder : its string is compared on 256 bytes at most,
+		as a run of skipped bytes would otherwise be compared up to 4096 times with itself by each position
+		(the string is not added when an older one has the same 256 bytes).</p>
+	*/
+	private void insertSkipped(int new_node)
+	{
+		int max_length = finder.max_length;
 
-			// Sort the low part of the list :
-			if (low < h) sort(list, low, h);
+		finder.max_length = Math.min(max_length, LOOK_AHEAD_SIZE);
+		finder.insertString(new_node);
+		finder.max_length = max_length;
+	}
 
-			// Sort the high part of the list :
-			if (l < high) sort(list, l, high);
-		}
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Returns the number of extra bits of a distance (0 without string matching).</p>
+	*/
+	private static int distanceExtraBits(int distance)
+	{
+		return (distance > 0) ? MatchCodes.DISTANCE_EXTRA[ MatchCodes.distanceSymbol(distance) ] : 0;
 	}
 
+	/**
+		<p>Search for a string matching on the back window.</p>
+		<p>For lazy matching only.</p>
+	*/
+	private void searchString(int new_node)
+	{
+		finder.searchString(new_node, current_distance);
+		match_length = finder.match_length;
+		match_distance = finder.match_distance;
+	}
 
 	// ---------------------------------------------------------------------------------------------
-	public void print(BinaryTree[] tab) {
-		int size = 0;
-		for (int i=0; i< tab.length; i++) {
-			BinaryTree node = tab[i];
-			if ((node != null) && (node.frequence > 0)) {
-				size ++;
-				if (node.word != null) System.out.print(node.word + " ");
-				node.toString();
-			}
-		}
-		System.out.println("array size is " +  size);
+	private void deleteString(int p)
+	{
+		finder.deleteString(p);
 	}
 
+
+	/**
+		<p>Reading the next character from the input file.</p>
+		<p>Here, an upper to lower case transformation code is operated on the base text using a escape context code.</p>
+	*/
 	// ---------------------------------------------------------------------------------------------
-	synchronized public void redirectOutput() {
-		try {
-			if (logFile==null) return;
+	private int readNext() throws EOFException {
+		read_count ++;
+
+		if (preset_remaining > 0) return (preset[preset.length - preset_remaining--] + 128);
 
-			java.io.File oldFile = new java.io.File(logFile + ".old");
-			java.io.File newFile = new java.io.File(logFile);
+		if (source != null) {
+			if (!source.hasRemaining()) throw new EOFException();
+			return (source.get() + 128);
+		}
 
-			if (oldFile.exists())	oldFile.delete();
+		if (mapped != null) {
+			int b;
+			try {
+				b = mapped.read();
+			}
+			catch (IOException e) {
+				b = -1;
+			}
+			if (b < 0) throw new EOFException();
 
-			if (newFile.exists())	newFile.renameTo(oldFile);
+			return (b ^ 0x80);
+		}
 
-			PrintStream p = new PrintStream(new FileOutputStream(newFile),true);
+		try {
+			return (bis.readByte() + 128);
 
-			System.setOut(p);
 		}
 		catch (Exception e) {
-			System.out.println("redirectOutput " + e);
+			throw new EOFException();
 		}
 	}
 
+	// ---------------------------------------------------------------------------------------------
 	static public void help()
 	{
 		System.out.println("LZCompress v1.0, Ronan Merien, rmerien@hotmail.com");
-		System.out.println("Usage: java LZCompress fileName");
+		System.out.println("Usage: java LZCompress [-1 .. -9 | -u | -o] [-t] [-p] [-f] [-b bits] [-l] [-d dico] [-w file] fileName");
+		System.out.println("		-1 fastest compression, -9 best compression (default), -u ultra, -o optimal parsing (slowest)");
+		System.out.println("		-t trace each code generated into log.txt");
+		System.out.println("		-p compress by chunks on all the processors");
+		System.out.println("		-f compress by independent frames, which can be expanded in parallel");
+		System.out.println("		-b window of 2^bits bytes, from 16 (64K, by default) to 26 (64 MB)");
+		System.out.println("		-l long string matching, up to 4096 bytes (256 by default)");
+		System.out.println("		-d refer to the words of a dictionnary (english.dico, or one built by zpp.DicoTrainer)");
+		System.out.println("		-w prime the back window with the file (a preset dictionnary)");
 		System.out.println("Examples:	java LZCompress photo.bmp");
 		System.out.println("		compress photo.bmp to photo.bmp.lz");
+		System.out.println("		java LZCompress -1 server.log");
+		System.out.println("		compress server.log to server.log.lz, as fast as possible");
 		System.out.println("");
 	}
 
@@ -1144,21 +1405,60 @@ public class LZCompress {
 		// java.util.Date d1 = new java.util.Date();
 
 		int argc = args.length;
+		int level = Level.DEFAULT;
+		boolean traced = false;
+		boolean parallel = false;
+		boolean framed = false;
+		String dicoFile = null;
+		String presetFile = null;
+		int window_bits = INDEX_BIT_COUNT;
+		boolean long_matches = false;
+		int arg = 0;
+
+		while ((arg < argc) && args[arg].startsWith("-")) {
+			String option = args[arg++];
+
+			if (option.equals("-u")) level = Level.ULTRA;
+			else if (option.equals("-o")) level = Level.OPTIMAL;
+			else if (option.equals("-t")) traced = true;
+			else if (option.equals("-p")) parallel = true;
+			else if (option.equals("-f")) framed = true;
+			else if (option.equals("-l")) long_matches = true;
+			else if (option.equals("-d") && (arg < argc)) dicoFile = args[arg++];
+			else if (option.equals("-w") && (arg < argc)) presetFile = args[arg++];
+			else if (option.equals("-b") && (arg < argc)) window_bits = Integer.parseInt(args[arg++]);
+			else if ((option.length() == 2) && (option.charAt(1) >= '1') && (option.charAt(1) <= '9')) level = option.charAt(1) - '0';
+			else {
+				help();
+				return;
+			}
+		}
 
-		if (argc > 0) {
-			String filename = args[0];
+		if (arg < argc) {
+			String filename = args[arg];
 
 			String inFile = filename;
 			String outFile = filename + ".lz";
 
 			try {
-				FileOutputStream fos = new FileOutputStream(outFile);
-				BufferedOutputStream bos = new BufferedOutputStream(fos);
-
 				System.out.println("LZ compress " + inFile + " to " + outFile);
 
-				LZCompress compress = new LZCompress(inFile, bos);
-				bos.close();
+				PrintTrace trace = (traced ? new PrintTrace("log.txt") : null);
+
+				try {
+					LZCompress compress = new LZCompress(Level.get(level), Level.get(level).createFinder(), trace);
+					if (parallel) compress.setParallel(new ForkJoinPool(), CHUNK_SIZE, true);
+					compress.setFramed(framed);
+					compress.setWindowBits(window_bits);
+					compress.setLongMatches(long_matches);
+					if (dicoFile != null) compress.setDico(Dico.load(dicoFile));
+					if (presetFile != null) compress.setDictionary(java.nio.file.Files.readAllBytes(new File(presetFile).toPath()));
+
+					compress.compressFile(inFile, outFile);
+				}
+				finally {
+					if (trace != null) trace.close();
+				}
 			}
 			catch (Exception e) {
 				System.out.println(e);
@@ -8,7 +8,9 @@
 */
 
 import java.io.*;
+import java.nio.*;
 import java.util.*;
+import java.util.concurrent.*;
 import binary.*;
 import zpp.*;
 
@@ -16,7 +18,7 @@ import zpp.*;
 	<p>This class deflate a previous compress file.</p>
 
 	<p>The compression used a combination of the LZSS algorithm, Huffman coding and word references from a static dictionnary.</p>
-	<p>The LZSS algorithm may use a reference to a duplicated string (256 bytes max) occurring in a previous block, up to 64K input bytes before.</p>
+	<p>The LZSS algorithm may use a reference to a duplicated string (256 bytes max, or 4096 with long matches) occurring in a previous block, up to 64K input bytes before.</p>
 
 	<p>The compressed data consists of a series of elements of two types: literal bytes (of strings that have not been detected
 	as duplicated within the previous input bytes), and pointers to duplicated strings, where a pointer is represented as a pair <length, backward distance>.</p>
@@ -27,7 +29,8 @@ import zpp.*;
 */
 public class LZExpand {
 
-	String logFile = "log.txt";
+	// notified of each code read (no trace by default)
+	TraceListener trace = null;
 
 	static int INDEX_BIT_COUNT = 16;
 	static int LENGTH_BIT_COUNT = 8;
@@ -37,503 +40,707 @@ public class LZExpand {
 	static int TREE_ROOT = WINDOW_SIZE;
 	static int UNUSED = 0;
 
-	static int maxBits = 20;
-	int[] count = new int[maxBits];
-	int[] next_code = new int[maxBits];
-
-	BinaryTree[] tabStatistics_len;
-	BinaryTree[] tabStatistics_dis;
-
 	static int len_max = 281;
 	static int dis_max = 32;
 
+	// the window of the compressed data (2^window_bits bytes, see LZCompress.setWindowBits) and its number of distance symbols
+	int window_size = WINDOW_SIZE;
+	int nb_dis = dis_max;
+
+	// the number of length symbols (len_max, and one more for the long lengths of Header.LONG)
+	int nb_len = len_max;
+
+	// the largest window allocated, when the expanded size is known to be smaller than the window of the compressed data
+	int window_bits_max = MatchCodes.MAX_WINDOW_BITS;
+
+	// number of bits resolved by the primary lookup table of each Huffman decoder
+	static int LEN_ROOT_BITS = 10;
+	static int DIS_ROOT_BITS = 8;
+
+	static int BUFFER_SIZE = (1 << 16);
+
 	BinaryInputStream bis;
-	BinaryOutputStream bos;
 
-	int[] window;
+	// the bytes of the back window, stored as their code (the byte + 128, see generate)
+	byte[] window;
+
+	HuffmanDecoder decoder_len;
+	HuffmanDecoder decoder_dis;
 
 	int current_distance = 1;
-	int match_length = 0;
+
+	// the number of bytes expanded since the back window was cleared
+	long expanded = 0;
+
+	// the string matching being copied from the back window
 	int match_distance = 0;
+	int match_remaining = 0;
+
+	// the words of the dictionnary (null when the compressed data does not refer to a dictionnary)
+	Dico dico;
+
+	// the dictionnary given by setDico (the default dictionnary when null)
+	Dico known_dico = null;
+
+	// the preset dictionnary given by setDictionary (its last bytes, which fit into the back window) and its identifier
+	byte[] preset = null;
+	int preset_id = 0;
+
+	// the back window is primed with the preset dictionnary, and the number of positions primed by the last reset
+	boolean primed = false;
+	int primed_length = 0;
+
+	// the dictionary word being copied
+	byte[] word = null;
+	int word_position = 0;
+
+	// the expansion state between two reads
+	boolean blocks;
+	boolean frames;
+	boolean stored;
+	int stored_remaining;
+	boolean in_block;
+	boolean last;
+	boolean end_of_blocks;
+	boolean end_of_stream;
+	int block_size;
+
+	// the length of the end of block code of an empty block which is not the last one (a sync flush, see LZCompress.writeSync),
+	// 0 for another block
+	int sync_bits;
+
+	// the expanded size of the current frame and its end in the input stream (in bits)
+	int frame_size;
+	long frame_end = -1;
+
+	// the threads of a parallel expansion (null for a sequential expansion)
+	ForkJoinPool pool = null;
+
+	// the expander of each thread (see getInstance)
+	static final ThreadLocal<LZExpand> instances = ThreadLocal.withInitial(() -> new LZExpand());
 
 	public LZExpand (String outFile, InputStream is)
 	{
-		if (logFile != null) redirectOutput();
+		this(outFile, is, null);
+	}
+
+	/**
+		<p>Expand the input stream and notify each code read to the trace listener (may be null).</p>
+	*/
+	public LZExpand (String outFile, InputStream is, TraceListener _trace)
+	{
+		this(_trace);
+
+		try {
+			ChannelOutputStream bufos = new ChannelOutputStream(outFile);
+
+			try {
+				expand(is, bufos);
+			}
+			catch (EOFException e) {
+				System.out.println(e);
+			}
+
+			bufos.close();
+		}
+		catch (Exception e) {
+			// Not a Zip++ File
+			System.out.println(e);
+		}
+	}
+
+	/**
+		<p>An expander, the input streams are expanded by the expand method.</p>
+	*/
+	public LZExpand (TraceListener _trace)
+	{
+		trace = _trace;
+
+		window = new byte[WINDOW_SIZE];
+	}
+
+	public LZExpand ()
+	{
+		this((TraceListener) null);
+	}
+
+	/**
+		<p>Returns the expander of the current thread (created by the first call).</p>
+		<p>Its buffers are kept from an expansion to the next one, so small inputs are expanded without allocation.
+		It must not be used by another thread, and its settings (setParallel) should not be changed.</p>
+	*/
+	public static LZExpand getInstance()
+	{
+		return instances.get();
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Expand the frames of an input stream on the threads of the pool (null to expand them sequentially).</p>
+		<p>The frames are not traced.</p>
+	*/
+	public void setParallel(ForkJoinPool _pool)
+	{
+		pool = _pool;
+	}
+
+	/**
+		<p>The dictionnary of the compressed data referring to words (see LZCompress.setDico),
+		null for the default dictionnary english.dico.</p>
+		<p>An IOException is thrown by the expansion when the data was compressed with another dictionnary.</p>
+	*/
+	public void setDico(Dico _dico)
+	{
+		known_dico = _dico;
+	}
+
+	/**
+		<p>The preset dictionnary of the compressed data (see LZCompress.setDictionary), null for none.</p>
+		<p>An IOException is thrown by the expansion when the data was compressed with another preset dictionnary.</p>
+	*/
+	public void setDictionary(byte[] dictionary)
+	{
+		if ((dictionary == null) || (dictionary.length == 0)) {
+			preset = null;
+			preset_id = 0;
+			return;
+		}
+
+		int size = Math.min(dictionary.length, WINDOW_SIZE - LOOK_AHEAD_SIZE);
+		preset = Arrays.copyOfRange(dictionary, dictionary.length - size, dictionary.length);
+
+		java.util.zip.Adler32 adler = new java.util.zip.Adler32();
+		adler.update(preset);
+		preset_id = (int) adler.getValue();
+	}
 
-		window = new int[WINDOW_SIZE];
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Expand the input stream into the output stream (the streams are not closed).</p>
+	*/
+	public void expand(InputStream is, OutputStream os) throws IOException
+	{
+		BinaryInputStream in = new BinaryInputStream(is);
+		BinaryOutputStream out = new BinaryOutputStream(os);
 
-		// Get statistics from input stream
-		tabStatistics_len = new BinaryTree[len_max];
-		for (int i=0; i<len_max; i++) {
-			tabStatistics_len[i] = new BinaryTree(i,0);
+		// a legacy file has no header and a single block
+		Header header = new Header();
+		header.read(in);
+
+		if (((header.flags & Header.FRAMES) != 0) && (pool != null)) expandFrames(in, out, header);
+		else {
+			start(in, header);
+
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = read(buffer, 0, buffer.length)) > 0) out.write(buffer, 0, n);
 		}
 
-		tabStatistics_dis = new BinaryTree[dis_max];
-		for (int i=0; i<dis_max; i++) {
-			tabStatistics_dis[i] = new BinaryTree(i,0);
+		out.flush();
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Expand the compressed data of <code>src</code> into <code>dst</code>, returns the number of bytes written.</p>
+		<p>The buffers may be heap or direct buffers, the position of <code>src</code> is moved after the compressed data.
+		A BufferOverflowException is thrown when <code>dst</code> is too small (its content is then undefined).</p>
+	*/
+	public int decompress(ByteBuffer src, ByteBuffer dst) throws IOException
+	{
+		BinaryInputStream in = new BinaryInputStream(new ByteBufferInputStream(src.duplicate()));
+
+		Header header = new Header();
+		header.read(in);
+
+		// the window only has to hold the bytes which fit into dst
+		long size = dst.remaining();
+		start(in, header, Math.min(window_bits_max, MatchCodes.windowBits(1 + size + ((preset != null) ? preset.length : 0))));
+
+		int start = dst.position();
+
+		if (dst.hasArray()) {
+			// expanded directly into the array of the buffer
+			byte[] b = dst.array();
+			int offset = dst.arrayOffset();
+			int p = dst.position();
+			int n;
+
+			while ((p < dst.limit()) && ((n = read(b, offset + p, dst.limit() - p)) >= 0)) p += n;
+			dst.position(p);
 		}
+		else {
+			byte[] buffer = new byte[Math.min(BUFFER_SIZE, Math.max(dst.remaining(), 1))];
+			int n;
 
-		for (int i=0; i < maxBits; i++) {
-			count[i] = 0;
-			next_code[i] = 0;
+			while (dst.hasRemaining() && ((n = read(buffer, 0, Math.min(buffer.length, dst.remaining()))) >= 0)) dst.put(buffer, 0, n);
 		}
 
+		if (!dst.hasRemaining() && (read(new byte[1], 0, 1) >= 0)) throw new BufferOverflowException();
+
+		src.position(src.position() + (int) ((in.getBits() + 7) >>> 3));
+		return dst.position() - start;
+	}
+
+	/**
+		<p>Expand the compressed data of the array into <code>dst</code>, returns the number of bytes written.</p>
+	*/
+	public int decompress(byte[] src, ByteBuffer dst) throws IOException
+	{
+		return decompress(ByteBuffer.wrap(src), dst);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Expand the input file into the output file : the input file is memory mapped,
+		and the output file is written through a large direct buffer.</p>
+	*/
+	public void expandFile(String inFile, String outFile) throws IOException
+	{
+		MappedInputStream mis = new MappedInputStream(inFile);
+		ChannelOutputStream cos = new ChannelOutputStream(outFile);
+
 		try {
+			expand(mis, cos);
+		}
+		finally {
+			mis.close();
+			cos.close();
+		}
+	}
 
-			// ----------------------------------------------------------------------------------------------------------------------
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Start to expand the compressed data following the header (already read) of the input stream,
+		the expanded bytes are then returned by read.</p>
+	*/
+	void start(BinaryInputStream in, Header header) throws IOException
+	{
+		start(in, header, window_bits_max);
+	}
 
-			bis = new BinaryInputStream(new BufferedInputStream(is));
+	/**
+		<p>Start to expand the compressed data, with a window of 2^<code>max_bits</code> bytes at most
+		(when the expanded size is known to fit into it).</p>
+	*/
+	void start(BinaryInputStream in, Header header, int max_bits) throws IOException
+	{
+		bis = in;
+		blocks = (header.version != Header.LEGACY);
+		frames = ((header.flags & Header.FRAMES) != 0);
+		stored = ((header.flags & Header.STORED) != 0);
+
+		dico = null;
+		if ((header.flags & Header.WORDS) != 0) {
+			dico = (known_dico != null) ? known_dico : Dico.get();
+			if (dico.id() != header.dictionary) throw new IOException("dictionnary not found");
+		}
 
-			FileOutputStream fos = new FileOutputStream(outFile);
-			BinaryOutputStream bos = new BinaryOutputStream(new BufferedOutputStream(fos));
+		primed = ((header.flags & Header.PRESET) != 0);
+		if (primed && ((preset == null) || (preset_id != header.preset))) throw new IOException("preset dictionnary not found");
+
+		// the window is allocated from the size given by the header
+		// (a larger window allocated for a previous stream is kept, the distances of the stream are found into it as well)
+		nb_dis = MatchCodes.distanceSymbols(header.window_bits);
+		nb_len = ((header.flags & Header.LONG) != 0) ? len_max + 1 : len_max;
+		int bits = Math.max(MatchCodes.MIN_WINDOW_BITS, Math.min(header.window_bits, max_bits));
+		if (window_size < (1 << bits)) {
+			window_size = (1 << bits);
+			window = new byte[window_size];
+			expanded = 0;
+			primed_length = 0;
+		}
 
-			try {
+		in_block = false;
+		end_of_blocks = false;
+		end_of_stream = false;
+		frame_end = -1;
 
-				// get statistics from input stream
-				// --------------------------------------------------------
+		if (stored) stored_remaining = bis.readBits(32);
+		else reset();
 
-				for (int i=0; i < maxBits; i++) {
-					count[i] = 0;
-					next_code[i] = 0;
-				}
+		if (frames) nextFrame();
+	}
 
-				for (int i=0; i<len_max; i++) {
-					int value = bis.readBit(4);
+	/**
+		<p>Clear the back window, as before a new stream or frame (the blocks of a frame do not refer to a previous frame),
+		then prime it with the preset dictionnary when the stream has one.</p>
+		<p>Only the positions of the window written since the previous reset are cleared,
+		so a small stream does not pay for the whole window.</p>
+	*/
+	public void reset()
+	{
+		current_distance = 1;
+		match_remaining = 0;
+		word = null;
+
+		// at most one position is written by expanded byte, from the position 1 (after the primed positions)
+		Arrays.fill(window, 0, (int) Math.min(window_size, primed_length + expanded + 1), (byte) 0);
+		expanded = 0;
+		primed_length = 0;
+
+		if (primed) {
+			for (int i=0; i<preset.length; i++) window[1 + i] = (byte) (preset[i] + 128);
+			primed_length = preset.length;
+			current_distance = 1 + preset.length;
+		}
+	}
 
-					if (value == 0x00){
-						i = i + bis.readBit(8);
-					}
-					else {
-						if (value == 15) value = value + bis.readBit(2);
-						if (value == 18) value = value + bis.readBit(2);
-						tabStatistics_len[i].nbBits = value;
-						count[value]++;
-					}
-				}
+	/**
+		<p>Read the sizes of the next frame, after the end of the current one.</p>
+		<p>A frame is made of its expanded size and its compressed size (32 bits each), then of the compressed blocks of the frame.
+		A frame of 0 byte ends the stream.</p>
+	*/
+	private void nextFrame() throws IOException
+	{
+		if (frame_end >= 0) {
+			long padding = frame_end - bis.getBits();
+			if ((padding < 0) || (padding >= 8) || (expanded != frame_size)) throw new IOException("corrupted frame");
+			bis.skipBits((int) padding);
+		}
 
-				int code = 0;
-				count[0] = 0;
-				for (int bits = 1; bits < maxBits; bits++) {
-					code = (code + count[bits-1]) << 1;
-					next_code[bits] = code;
-				}
+		frame_size = bis.readBits(32);
+		int compressed_size = bis.readBits(32);
 
-				BinaryTree tree_len = new BinaryTree(-1,0);
+		if (frame_size == 0) {
+			end_of_stream = true;
+			return;
+		}
 
-				for (int i=0; i<len_max; i++) {
-					int len = tabStatistics_len[i].nbBits;
-					if (len != 0) {
-						tabStatistics_len[i].compressCode = next_code[len];
-						convert_code_to_tree(tree_len, tabStatistics_len[i], len);
-						next_code[len]++;
-					}
-				}
+		frame_end = bis.getBits() + 8L * compressed_size;
+		end_of_blocks = false;
+		reset();
+	}
 
-				// --------------------------------------------------------
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Read up to <code>len</code> bytes of stored data (see Header.STORED).</p>
+	*/
+	private int readStored(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0) return 0;
+		if (stored_remaining == 0) return -1;
 
-				for (int i=0; i< maxBits; i++) {
-					count[i] = 0;
-					next_code[i] = 0;
-				}
+		int n = bis.read(b, off, Math.min(len, stored_remaining));
+		if (n < 0) throw new EOFException();
 
-				for (int i=0; i<dis_max; i++) {
-					int value = bis.readBit(4);
+		stored_remaining -= n;
+		return n;
+	}
 
-					if (value == 0x00) {
-						i = i + bis.readBit(5);
-					}
-					else {
-						tabStatistics_dis[i].nbBits = value;
-						count[value]++;
-					}
-				}
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Expand up to <code>len</code> bytes into the array, returns the number of bytes expanded
+		(-1 at the end of the compressed data).</p>
+		<p>The expansion is resumed where the previous call stopped, inside a block or a string matching.</p>
+	*/
+	int read(byte[] b, int off, int len) throws IOException
+	{
+		if (stored) return readStored(b, off, len);
 
-				code = 0;
-				count[0] = 0;
-				for (int bits = 1; bits < maxBits; bits++) {
-					code = (code + count[bits-1]) << 1;
-					next_code[bits] = code;
-				}
+		int n = off;
+		int end = off + len;
 
-				BinaryTree tree_dis = new BinaryTree(-1,0);
+		// the bytes expanded before n are already counted into expanded
+		int counted = off;
 
-				for (int i=0; i<dis_max; i++) {
-					int len = tabStatistics_dis[i].nbBits;
-					if (len != 0) {
-						tabStatistics_dis[i].compressCode = next_code[len];
-						convert_code_to_tree(tree_dis, tabStatistics_dis[i], len);
-						next_code[len]++;
-					}
-				}
+		try {
+			while (n < end) {
 
+				// the remaining characters of a dictionary word
+				if (word != null) {
+					int c = word[word_position++];
+					b[n++] = (byte) c;
 
-				System.out.println("-----------------------------------------------");
-				for (int i=0; i<len_max; i++) {
-				System.out.println(Binary.toHexaString((byte)i)
-				+ " -> "
-				+ tabStatistics_len[i].nbBits);
-				}
+					window[current_distance] = (byte) (c + 128);
+					current_distance = mod_window(current_distance + 1);
 
-				System.out.println("-----------------------------------------------");
-				for (int i=0; i<dis_max; i++) {
-					System.out.println(Binary.toHexaString((byte)i)
-					+ " -> "
-					+ tabStatistics_dis[i].nbBits);
+					if (word_position == word.length) word = null;
+					continue;
 				}
 
-				System.out.println("-----------------------------------------------");
-				for (int i=0; i<len_max; i++) {
-					System.out.println(Binary.toHexaString((byte)i)
-					+ " -> "
-					+ Binary.toBinaryString(tabStatistics_len[i].compressCode,tabStatistics_len[i].nbBits));
-				}
+				// the remaining characters of a string matching
+				if (match_remaining > 0) {
+					while ((match_remaining > 0) && (n < end)) {
+						byte value = window[mod_window(current_distance - match_distance)];
+						window[current_distance] = value;
+						current_distance = mod_window(current_distance + 1);
+						match_remaining --;
 
-				System.out.println("-----------------------------------------------");
-				for (int i=0; i<dis_max; i++) {
-					System.out.println(Binary.toHexaString((byte)i)
-					+ " -> "
-					+ Binary.toBinaryString(tabStatistics_dis[i].compressCode,tabStatistics_dis[i].nbBits));
+						b[n++] = (byte) generate(value & 0xFF);
+					}
+					continue;
 				}
 
-				System.out.println("-----------------------------------------------");
-
+				if (!in_block) {
+					if (end_of_stream) break;
 
-				// expand until the end of the input file
-				while (true) {
-					match_length = 0;
-					match_distance = 0;
+					if (end_of_blocks) {
+						if (frames) {
+							expanded += n - counted;
+							counted = n;
+							nextFrame();
+						}
+						else end_of_stream = true;
+						continue;
+					}
 
-					BinaryTree node = null;
-					boolean find = false;
-					int value = -1;
-					byte b = 0;
+					if (blocks) last = (bis.readBits(1) == 1);
+					else last = true;
 
-					node = tree_len;
-					while (!find) {
-						b = bis.readBit();
-						// System.out.print(Binary.toSingleBinaryString(b));
+					readTables();
+					block_size = 0;
+					in_block = true;
 
-						if (b == 0x00)	node = node.node_0;
-						else			node = node.node_1;
+					// the end of a sync flush : its end of block code is read without looking further,
+					// then the bits up to the byte boundary, and the bytes expanded so far are returned
+					if (sync_bits > 0) {
+						bis.skipBits(sync_bits);
+						bis.skipBits((int) (-bis.getBits() & 0x07));
 
-						if (node == null) throw new Exception();
+						if (trace != null) trace.blockFinished(false, 0, bis.getBits());
+						in_block = false;
 
-						value = node.codeAscii;
-						if (value != -1) find = true;
+						if (n > off) break;
+						continue;
 					}
+				}
 
-					// System.out.println();
-					System.out.println("value = " + value);
+				int value = decoder_len.decode(bis);
 
-					// single character
-					if (value < 256) {
-						int code_ascii = generate(value);
+				// single character
+				if (value < 256) {
+					int code_ascii = generate(value);
 
-						System.out.println((char) code_ascii + "," + (int) code_ascii);
-						bos.writeByte((byte) code_ascii);
+					block_size ++;
+					if (trace != null) trace.literal(code_ascii & 0xFF);
+					b[n++] = (byte) code_ascii;
 
-						window[current_distance] = value;
-						current_distance = mod_window(current_distance + 1);
+					window[current_distance] = (byte) value;
+					current_distance = mod_window(current_distance + 1);
+				}
+				// end of block
+				else if (value == 256) {
+					if (trace != null) trace.blockFinished(last, block_size, bis.getBits());
+					in_block = false;
+					end_of_blocks = last;
+				}
+				// back window reference
+				else if (((value >= 257) && (value <= 279)) || (value == MatchCodes.LONG_SYMBOL)) {
+					int match_length;
 
+					if (value == MatchCodes.BREAK_EVEN_SYMBOL) {
+						match_length = BREAK_EVEN;
+						match_distance = bis.readBits(MatchCodes.BREAK_EVEN_DISTANCE_BITS)+1;
 					}
-					// end of file
-					else if (value == 256) break;
-					// back window reference
-					else if ((value >= 257) && (value <= 279)) {
-
-						if (value == 257) {
-							match_length = BREAK_EVEN;
-							match_distance =  bis.readBit(12)+1;
-						}
-						else {
-							if (value == 258) {
-								match_length = 4;
-							}
-							else if (value == 259) {
-								match_length = 5;
-							}
-							else if (value == 260) {
-								match_length = 6;
-							}
-							else if (value == 261) {
-								match_length = 7;
-							}
-							else if (value == 262) {
-								match_length = 8;
-							}
-							else if (value == 263) {
-								match_length = 9;
-							}
-							else if (value == 264) {
-								match_length = 10;
-							}
-							else if (value == 265) {
-								match_length = 11 + bis.readBit(1);
-							}
-							else if (value == 266) {
-								match_length = 13 + bis.readBit(1);
-							}
-							else if (value == 267) {
-								match_length = 15 + bis.readBit(1);
-							}
-							else if (value == 268) {
-								match_length = 17 + bis.readBit(1);
-							}
-							else if (value == 269) {
-								match_length = 19 + bis.readBit(2);
-							}
-							else if (value == 270) {
-								match_length = 23 + bis.readBit(2);
-							}
-							else if (value == 271) {
-								match_length = 27 + bis.readBit(2);
-							}
-							else if (value == 272) {
-								match_length = 31 + bis.readBit(2);
-							}
-							else if (value == 273) {
-								match_length = 35 + bis.readBit(3);
-							}
-							else if (value == 274) {
-								match_length = 43 + bis.readBit(3);
-							}
-							else if (value == 275) {
-								match_length = 51 + bis.readBit(3);
-							}
-							else if (value == 276) {
-								match_length = 59 + bis.readBit(3);
-							}
-							else if (value == 277) {
-								match_length = 67 + bis.readBit(5);
-							}
-							else if (value == 278) {
-								match_length = 99 + bis.readBit(5);
-							}
-							else if (value == 279) {
-								match_length = 131 + bis.readBit(7);
-							}
-
-							node = tree_dis;
-							find = false;
-							value = -1;
-
-							while (!find) {
-								b = bis.readBit();
-								// System.out.print(Binary.toSingleBinaryString(b));
-
-								if (b == 0x00)	node = node.node_0;
-								else 			node = node.node_1;
-
-								if (node == null) throw new Exception();
-
-								value = node.codeAscii;
-								if (value != -1) find = true;
-							}
-							// System.out.println();
-							// System.out.println("value = " + value);
-
-							if (value == 0) {
-								match_distance = 1 + bis.readBit(3);
-							}
-							else if (value == 1) {
-								match_distance = 9 + bis.readBit(3);
-							}
-							else if (value == 2) {
-								match_distance = 17 + bis.readBit(3);
-							}
-							else if (value == 3) {
-								match_distance = 25 + bis.readBit(3);
-							}
-							else if (value == 4) {
-								match_distance = 33 + bis.readBit(4);
-							}
-							else if (value == 5) {
-								match_distance = 49 + bis.readBit(4);
-							}
-							else if (value == 6) {
-								match_distance = 65 + bis.readBit(5);
-							}
-							else if (value == 7) {
-								match_distance = 97 + bis.readBit(5);
-							}
-							else if (value == 8) {
-								match_distance= 129 + bis.readBit(6);
-							}
-							else if (value == 9) {
-								match_distance = 193 + bis.readBit(6);
-							}
-							else if (value == 10) {
-								match_distance = 257 + bis.readBit(7);
-							}
-							else if (value == 11) {
-								match_distance = 385 + bis.readBit(7);
-							}
-							else if (value == 12) {
-								match_distance = 513 + bis.readBit(8);
-							}
-							else if (value == 13) {
-								match_distance = 769 + bis.readBit(8);
-							}
-							else if (value == 14) {
-								match_distance = 1025 + bis.readBit(9);
-							}
-							else if (value == 15) {
-								match_distance = 1537 + bis.readBit(9);
-							}
-							else if (value == 16) {
-								match_distance = 2049 + bis.readBit(10);
-							}
-							else if (value == 17) {
-								match_distance = 3073 + bis.readBit(10);
-							}
-							else if (value == 18) {
-								match_distance = 4097 + bis.readBit(11);
-							}
-							else if (value == 19) {
-								match_distance = 6145 + bis.readBit(11);
-							}
-							else if (value == 20) {
-								match_distance = 8193 + bis.readBit(12);
-							}
-							else if (value == 21) {
-								match_distance = 12289 + bis.readBit(12);
-							}
-							else if (value == 22) {
-								match_distance = 16385 + bis.readBit(12);
-							}
-							else if (value == 23) {
-								match_distance = 20481 + bis.readBit(12);
-							}
-							else if (value == 24) {
-								match_distance = 24577 + bis.readBit(12);
-							}
-							else if (value == 25) {
-								match_distance = 28673 + bis.readBit(12);
-							}
-							else if (value == 26) {
-								match_distance = 32769 + bis.readBit(12);
-							}
-							else if (value == 27) {
-								match_distance = 36865 + bis.readBit(12);
-							}
-							else if (value == 28) {
-								match_distance = 40961 + bis.readBit(12);
-							}
-							else if (value == 29) {
-								match_distance = 45057 + bis.readBit(12);
-							}
-							else if (value == 30) {
-								match_distance = 49153 + bis.readBit(13);
-							}
-							else if (value == 31) {
-								match_distance = 57345 + bis.readBit(13);
-							}
-
-						} // End If
-
-						// System.out.println("match_length = " + match_length);
-						// System.out.println("match_distance = " + match_distance);
-
-						for (int i=0; i< match_length; i++) {
-							value = window[mod_window(current_distance - match_distance)];
-							// System.out.println("value = " + value);
-
-							if (value >= 256) {
-								int delta = value - 256;
-
-								for (int j=0; j< Dico.tabStatistics_dico[delta].word.length(); j++) {
-									int code_ascii = generate(Dico.tabStatistics_dico[delta].word.charAt(j));
-
-									System.out.println((char) code_ascii + "," + (int) code_ascii);
-									bos.writeByte((byte) code_ascii);
-								}
-							}
-							else {
-								int code_ascii = generate(value);
-
-								System.out.println((char) code_ascii + "," + (int) code_ascii);
-								bos.writeByte((byte) code_ascii);
-
-							}
-
-							window[current_distance] = value;
-							current_distance = mod_window(current_distance + 1);
-						}
+					else {
+						// a long length is followed by its number of bits, then by the length
+						if (value == MatchCodes.LONG_SYMBOL) match_length = MatchCodes.LONG_LENGTH + bis.readBits(bis.readBits(4));
+						else match_length = MatchCodes.LENGTH_BASE[value] + bis.readBits(MatchCodes.LENGTH_EXTRA[value]);
 
+						value = decoder_dis.decode(bis);
+						match_distance = MatchCodes.DISTANCE_BASE[value] + bis.readBits(MatchCodes.DISTANCE_EXTRA[value]);
 					} // End If
-				} // End While
 
-			}
-			catch (EOFException e) {
-				System.out.println(e);
-			}
+					// a length code and a distance code
+					block_size += 2;
+					if (trace != null) trace.match(match_length, match_distance);
 
-			bis.close();
-			bos.close();
+					match_remaining = match_length;
+				}
+				// a word of the dictionnary
+				else if ((value == MatchCodes.WORD_SYMBOL) && (dico != null)) {
+					int number = dico.decode(bis);
+
+					block_size ++;
+					if (trace != null) trace.word(number, dico.bytes(number).length);
+
+					word = dico.bytes(number);
+					word_position = 0;
+					if (word.length == 0) word = null;
+				}
+				else throw new IOException("corrupted block");
+			}
 		}
-		catch (Exception e) {
-			// Not a Zip++ File
-			System.out.println(e);
+		finally {
+			expanded += n - counted;
 		}
+
+		if ((n == off) && (len > 0)) return -1;
+		return n - off;
 	}
 
 	// ---------------------------------------------------------------------------------------------
-	private int mod_window(int a)
+	/**
+		<p>Expand the frames of the input stream on the threads of the pool, until a frame of 0 byte.</p>
+		<p>The frames do not refer to a previous frame, and their sizes are known before they are expanded,
+		so each frame is expanded into its own buffer by a FrameTask, and the buffers are written in order.</p>
+	*/
+	private void expandFrames(BinaryInputStream in, BinaryOutputStream out, Header header) throws IOException
 	{
-		return (int) (a & (WINDOW_SIZE - 1));
+		int max_tasks = 2 * pool.getParallelism();
+		ArrayDeque<ForkJoinTask<byte[]>> tasks = new ArrayDeque<ForkJoinTask<byte[]>>();
+
+		while (true) {
+			int size = in.readBits(32);
+			int compressed_size = in.readBits(32);
+			if (size == 0) break;
+			if ((size < 0) || (compressed_size < 0)) throw new IOException("corrupted frame");
+
+			byte[] data = new byte[compressed_size];
+			int n = 0;
+			while (n < compressed_size) {
+				int r = in.read(data, n, compressed_size - n);
+				if (r < 0) throw new EOFException();
+				n += r;
+			}
+
+			FrameTask task = new FrameTask(data, size, header, this);
+
+			tasks.addLast(pool.submit(task));
+			if (tasks.size() >= max_tasks) out.write(join(tasks.removeFirst()));
+		}
+
+		while (!tasks.isEmpty()) out.write(join(tasks.removeFirst()));
 	}
 
+	/**
+		<p>Returns the frame expanded by the task : the IOException of a corrupted frame is thrown as is
+		(the pool wraps it into RuntimeExceptions).</p>
+	*/
+	private static byte[] join(ForkJoinTask<byte[]> task) throws IOException
+	{
+		try {
+			return task.join();
+		}
+		catch (RuntimeException e) {
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) throw (IOException) cause;
+			}
+			throw e;
+		}
+	}
 
-	// ---------------------------------------------------------------------------------------------
 	/**
+		<p>A FrameTask expand a frame with its own expander.</p>
 	*/
-	private int generate(int code_ascii) {
+	static class FrameTask implements Callable<byte[]> {
+		byte[] data;
+		int size;
+		Header header;
+		LZExpand settings;
+
+		FrameTask (byte[] _data, int _size, Header _header, LZExpand _settings)
+		{
+			data = _data;
+			size = _size;
+			header = _header;
+			settings = _settings;
+		}
 
-		return code_ascii - 128;
+		public byte[] call() throws IOException
+		{
+			byte[] frame = new byte[size];
+
+			// the blocks of a frame are expanded as a stream of blocks without frame
+			Header blocks_header = new Header();
+			blocks_header.flags = header.flags & ~Header.FRAMES;
+			blocks_header.dictionary = header.dictionary;
+			blocks_header.preset = header.preset;
+			blocks_header.window_bits = header.window_bits;
+
+			// the dictionnaries of the expander of the stream (immutable, so shared)
+			LZExpand expand = new LZExpand();
+			expand.known_dico = settings.known_dico;
+
+			// the window of a frame only has to hold the frame and the preset dictionnary
+			expand.window_bits_max = MatchCodes.windowBits(1L + size + ((settings.preset != null) ? settings.preset.length : 0));
+			expand.preset = settings.preset;
+			expand.preset_id = settings.preset_id;
+			expand.start(new BinaryInputStream(new ByteArrayInputStream(data)), blocks_header);
+
+			int n = 0;
+			while (n < size) {
+				int r = expand.read(frame, n, size - n);
+				if (r < 0) break;
+				n += r;
+			}
+
+			if ((n != size) || (expand.read(new byte[1], 0, 1) >= 0)) throw new IOException("corrupted frame");
+			return frame;
+		}
 	}
 
 	// ---------------------------------------------------------------------------------------------
-	public BinaryTree convert_code_to_tree(BinaryTree tree,
-									 		BinaryTree node,
-									 		int nbBits)
+	/**
+		<p>Read the code lengths written before the compressed data of a block,
+		and build the Huffman decoders of the block.</p>
+	*/
+	private void readTables() throws IOException
 	{
-		if (nbBits == 0) {
-			return node;
+		// the code lengths of the literals and lengths (a run of unused symbols is a 0 followed by its length on 8 bits)
+		int[] nbBits_len = new int[nb_len];
+
+		for (int i=0; i<nb_len; i++) {
+			int value = bis.readBits(4);
+
+			if (value == 0x00){
+				i = i + bis.readBits(8);
+			}
+			else {
+				if (value == 15) value = value + bis.readBits(2);
+				if (value == 18) value = value + bis.readBits(2);
+				nbBits_len[i] = value;
+			}
 		}
 
-		if (tree == null) tree = new BinaryTree(-1,0);
+		decoder_len = new HuffmanDecoder(nbBits_len, nb_len, LEN_ROOT_BITS);
+
+		// --------------------------------------------------------
 
-		int currentBit = ( (node.compressCode >> (nbBits - 1)) & 0x01 );
-		nbBits --;
+		// the code lengths of the distances (a run of unused symbols is a 0 followed by its length on 5 bits)
+		int[] nbBits_dis = new int[nb_dis];
 
-		if (currentBit == 0x00)	tree.node_0 = convert_code_to_tree(tree.node_0, node, nbBits);
-		else 					tree.node_1 = convert_code_to_tree(tree.node_1, node, nbBits);
+		for (int i=0; i<nb_dis; i++) {
+			int value = bis.readBits(4);
 
-		return tree;
+			if (value == 0x00) {
+				i = i + bis.readBits(5);
+			}
+			else {
+				nbBits_dis[i] = value;
+			}
+		}
+
+		decoder_dis = new HuffmanDecoder(nbBits_dis, nb_dis, DIS_ROOT_BITS);
+
+		// an empty block (only the end of block code) which is not the last one
+		sync_bits = 0;
+		if (!last) {
+			int used = 0;
+			for (int i=0; i<nb_len; i++) if (nbBits_len[i] > 0) used++;
+			for (int i=0; i<nb_dis; i++) if (nbBits_dis[i] > 0) used++;
+			if ((used == 1) && (nbBits_len[256] > 0)) sync_bits = nbBits_len[256];
+		}
+
+		if (trace != null) {
+			trace.tableBuilt(TraceListener.LENGTHS, nbBits_len);
+			trace.tableBuilt(TraceListener.DISTANCES, nbBits_dis);
+		}
 	}
 
 	// ---------------------------------------------------------------------------------------------
-	synchronized public void redirectOutput()
+	private int mod_window(int a)
 	{
-		try {
-			if (logFile==null) return;
-
-			java.io.File oldFile = new java.io.File(logFile + ".old");
-			java.io.File newFile = new java.io.File(logFile);
-
-			if (oldFile.exists())
-					oldFile.delete();
+		return (int) (a & (window_size - 1));
+	}
 
-			if (newFile.exists())
-			newFile.renameTo(oldFile);
 
-			PrintStream p = new PrintStream(new FileOutputStream(newFile),true);
+	// ---------------------------------------------------------------------------------------------
+	/**
+	*/
+	private int generate(int code_ascii) {
 
-			System.setOut(p);
-		}
-		catch (Exception e) {
-			System.out.println(e);
-		}
+		return code_ascii - 128;
 	}
 
 	// ---------------------------------------------------------------------------------------------
@@ -541,7 +748,11 @@ public class LZExpand {
 	static public void help()
 	{
 		System.out.println("LZExpand v1.0, Ronan Merien, rmerien@hotmail.com");
-		System.out.println("Usage: java LZExpand fileName");
+		System.out.println("Usage: java LZExpand [-t] [-p] [-d dico] [-w file] fileName");
+		System.out.println("		-t trace each code read into log.txt");
+		System.out.println("		-p expand the frames on all the processors (see LZCompress -f)");
+		System.out.println("		-d the dictionnary given to LZCompress -d (english.dico by default)");
+		System.out.println("		-w the preset dictionnary given to LZCompress -w");
 		System.out.println("Examples:	java LZExpand photo.bmp.lz");
 		System.out.println("		expand photo.bmp.lz to photo.bmp");
 		System.out.println("");
@@ -556,8 +767,27 @@ public class LZExpand {
 		// java.util.Date d1 = new java.util.Date();
 
 		int argc = args.length;
-		if (argc > 0) {
-			String filename = args[0];
+		boolean traced = false;
+		boolean parallel = false;
+		String dicoFile = null;
+		String presetFile = null;
+		int arg = 0;
+
+		while ((arg < argc) && args[arg].startsWith("-")) {
+			String option = args[arg++];
+
+			if (option.equals("-t")) traced = true;
+			else if (option.equals("-p")) parallel = true;
+			else if (option.equals("-d") && (arg < argc)) dicoFile = args[arg++];
+			else if (option.equals("-w") && (arg < argc)) presetFile = args[arg++];
+			else {
+				help();
+				return;
+			}
+		}
+
+		if (arg < argc) {
+			String filename = args[arg];
 			String extention = "";
 
 			while (filename.indexOf(".") != -1) {
@@ -570,13 +800,21 @@ public class LZExpand {
 				String inFile = filename + "." + extention + ".lz";
 				String outFile = filename + "_copy." + extention;
 
-				FileInputStream fis = new FileInputStream(inFile);
-				BufferedInputStream bis = new BufferedInputStream(fis);
-
 				System.out.println("LZ expand " + inFile + " to " + outFile);
 
-				LZExpand expand = new LZExpand(outFile, bis);
-				bis.close();
+				PrintTrace trace = (traced ? new PrintTrace("log.txt") : null);
+
+				try {
+					LZExpand expand = new LZExpand(trace);
+					if (parallel) expand.setParallel(new ForkJoinPool());
+					if (dicoFile != null) expand.setDico(Dico.load(dicoFile));
+					if (presetFile != null) expand.setDictionary(java.nio.file.Files.readAllBytes(new File(presetFile).toPath()));
+
+					expand.expandFile(inFile, outFile);
+				}
+				finally {
+					if (trace != null) trace.close();
+				}
 			}
 			catch (Exception e) {
 				System.out.println(e);
@@ -0,0 +1,130 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import binary.*;
+import zpp.*;
+
+/**
+	<p>This class implements a stream filter for reading compressed data (as written by LZCompress or LZOutputStream).</p>
+
+	<p>The data is expanded as the bytes are read : the header is read by the constructor,
+	then each read resumes the expansion where the previous one stopped.</p>
+	<p>The compressed data is read by blocks from the underlying stream,
+	so the bytes following the compressed data may be consumed too.</p>
+*/
+public class LZInputStream extends FilterInputStream {
+
+	LZExpand expand;
+
+	private boolean eof = false;
+	private byte[] single = new byte[1];
+
+	public LZInputStream (InputStream in) throws IOException
+	{
+		this(in, (TraceListener) null);
+	}
+
+	/**
+		<p>Expand the input stream and notify each code read to the trace listener (may be null).</p>
+	*/
+	public LZInputStream (InputStream in, TraceListener trace) throws IOException
+	{
+		this(in, trace, null);
+	}
+
+	/**
+		<p>Expand the input stream compressed with the words of a dictionnary (null for the default dictionnary).</p>
+	*/
+	public LZInputStream (InputStream in, TraceListener trace, Dico dico) throws IOException
+	{
+		this(in, newExpand(trace, dico));
+	}
+
+	/**
+		<p>Expand the input stream with the given expander (its trace listener and its dictionnaries, see LZExpand.setDictionary).</p>
+	*/
+	public LZInputStream (InputStream in, LZExpand _expand) throws IOException
+	{
+		super(in);
+
+		BinaryInputStream bis = new BinaryInputStream(in);
+
+		Header header = new Header();
+		header.read(bis);
+
+		expand = _expand;
+		expand.start(bis, header);
+	}
+
+	private static LZExpand newExpand(TraceListener trace, Dico dico)
+	{
+		LZExpand expand = new LZExpand(trace);
+		expand.setDico(dico);
+		return expand;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Reads the next expanded byte (-1 at the end of the compressed data).</p>
+	*/
+	public int read() throws IOException
+	{
+		return (read(single, 0, 1) < 0) ? -1 : (single[0] & 0xFF);
+	}
+
+	/**
+		<p>Reads up to <code>len</code> expanded bytes into the array,
+		returns the number of bytes read or -1 at the end of the compressed data.</p>
+	*/
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if ((off < 0) || (len < 0) || (len > b.length - off)) throw new IndexOutOfBoundsException();
+		if (len == 0) return 0;
+		if (eof) return -1;
+
+		int n = expand.read(b, off, len);
+		if (n < 0) eof = true;
+		return n;
+	}
+
+	public long skip(long n) throws IOException
+	{
+		byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+		long skipped = 0;
+
+		while (skipped < n) {
+			int r = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+			if (r < 0) break;
+			skipped += r;
+		}
+		return skipped;
+	}
+
+	/**
+		<p>Returns 0 after the end of the compressed data, otherwise 1.</p>
+	*/
+	public int available() throws IOException
+	{
+		return eof ? 0 : 1;
+	}
+
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	public void mark(int readlimit)
+	{
+	}
+
+	public void reset() throws IOException
+	{
+		throw new IOException("mark/reset not supported");
+	}
+}
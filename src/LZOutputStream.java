@@ -0,0 +1,155 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import binary.*;
+import zpp.*;
+
+/**
+	<p>This class implements a stream filter for writing compressed data (as expanded by LZExpand or LZInputStream).</p>
+
+	<p>The header is written by the constructor, then the bytes written are stored into a buffer of 1 MB,
+	which is compressed each time it is full. The compressor keeps its back window from a buffer to the next one,
+	so the data is compressed as well as by LZCompress.</p>
+	<p>The last block is written by finish or close : the data is complete only when the stream is finished.</p>
+*/
+public class LZOutputStream extends FilterOutputStream {
+
+	static int BUFFER_SIZE = (1 << 20);
+
+	LZCompress compress;
+	BinaryOutputStream bos;
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int count = 0;
+
+	// the first buffer starts the compression (and primes the preset dictionnary), the next ones resume it
+	private boolean started = false;
+
+	// no block is written since the last sync flush
+	private boolean synced = true;
+
+	private boolean finished = false;
+
+	public LZOutputStream (OutputStream out) throws IOException
+	{
+		this(out, Level.DEFAULT);
+	}
+
+	/**
+		<p>Compress with a compression level from Level.FASTEST (1) to Level.OPTIMAL (11).</p>
+	*/
+	public LZOutputStream (OutputStream out, int level) throws IOException
+	{
+		this(out, new LZCompress(level));
+	}
+
+	/**
+		<p>Compress with the given compressor (its level, match finder and trace listener).</p>
+	*/
+	public LZOutputStream (OutputStream out, LZCompress _compress) throws IOException
+	{
+		super(out);
+
+		compress = _compress;
+		bos = new BinaryOutputStream(out);
+
+		// the size of the data is not known, the whole window is allocated
+		compress.allocateWindow(-1);
+
+		compress.header().write(bos);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public void write(int b) throws IOException
+	{
+		if (finished) throw new IOException("write beyond end of stream");
+		if (count == buffer.length) compressBuffer(false);
+
+		buffer[count++] = (byte) b;
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if ((off < 0) || (len < 0) || (len > b.length - off)) throw new IndexOutOfBoundsException();
+		if (finished) throw new IOException("write beyond end of stream");
+
+		while (len > 0) {
+			// the buffer is compressed when more bytes are written, so the last buffer is compressed by finish
+			if (count == buffer.length) compressBuffer(false);
+
+			int size = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, size);
+			count += size;
+			off += size;
+			len -= size;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compress the bytes written so far and flush them into the underlying stream (a sync flush) :
+		their blocks are followed by an empty block on a byte boundary, so LZInputStream returns all of them
+		without waiting for the next bytes.</p>
+		<p>The compression of the next bytes starts a new block, and still refers to the bytes before.</p>
+	*/
+	public void flush() throws IOException
+	{
+		if (!finished) {
+			if (count > 0) compressBuffer(false);
+
+			if (!synced) {
+				compress.writeSync(bos);
+				synced = true;
+			}
+		}
+
+		bos.flush();
+	}
+
+	/**
+		<p>Finish to write the compressed data into the underlying stream, without closing it.</p>
+	*/
+	public void finish() throws IOException
+	{
+		if (finished) return;
+
+		compressBuffer(true);
+		finished = true;
+
+		bos.writeEOF();
+		bos.flush();
+	}
+
+	public void close() throws IOException
+	{
+		try {
+			finish();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compress the buffer, after the bytes of the previous buffers (still in the back window of the compressor).</p>
+	*/
+	private void compressBuffer(boolean last) throws IOException
+	{
+		ByteBuffer src = ByteBuffer.wrap(buffer, 0, count);
+
+		if (started) compress.resumeBlocks(src, bos, last);
+		else compress.compressBlocks(src, bos, 0, last);
+
+		started = true;
+		synced = false;
+		count = 0;
+	}
+}
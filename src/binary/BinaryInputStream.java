@@ -9,18 +9,34 @@ package binary;
 */
 
 import java.io.*;
+import java.lang.invoke.*;
+import java.nio.ByteOrder;
 
 /**
 	<p>A binary input stream let an application read binary data types
 	(as a byte or a group of bits) from an underlying input stream.</p>
+
+	<p>The bytes are read from the underlying stream by blocks into an internal buffer,
+	and up to 64 bits at a time are loaded into a bit accumulator,
+	so a group of bits is peeked or read with a few shift and mask operations.</p>
 */
 
 public class BinaryInputStream extends FilterInputStream {
 
-	private int currentValue;
-	private byte reference;
+	static int BUFFER_SIZE = 8192;
+
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	// the bytes read from the underlying stream and not loaded into the accumulator yet
+	private byte[] buffer;
+	private int position = 0;
+	private int limit = 0;
 
-	private int bits = 0;
+	// the bits loaded and not consumed yet (the next bit is the lowest one)
+	private long bitBuffer = 0;
+	private int bitCount = 0;
+
+	private long bits = 0;
 
 	private boolean statistics = false;
 	public int[] tabStatistics_1b = null;
@@ -29,10 +45,16 @@ public class BinaryInputStream extends FilterInputStream {
 	private int ch = -1;
 
 	public BinaryInputStream(InputStream in)
+	{
+		this(in, BUFFER_SIZE);
+	}
+
+	public BinaryInputStream(InputStream in, int size)
 	{
 		super(in);
-		currentValue = 0x00;
-		reference = 0;
+		buffer = new byte[Math.max(size, 16)];
+		bitBuffer = 0;
+		bitCount = 0;
 		bits = 0;
 
 		if (statistics) {
@@ -46,57 +68,114 @@ public class BinaryInputStream extends FilterInputStream {
 	}
 
 	/**
-		Read a single binary digit (bit) from the input stream.
+		Read the next block of bytes from the underlying stream into the buffer.
+		Returns false at the end of the stream.
 	*/
-	public byte readBit() throws IOException
+	private boolean load() throws IOException
 	{
-		if (reference==0) {
-			ch = in.read();
-			if (ch < 0) throw new EOFException();
-			currentValue = ch;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
 		}
 
-		byte b = (byte) ( (currentValue >> reference) & 0x01 );
+		int n = in.read(buffer, limit, buffer.length - limit);
+		if (n <= 0) return false;
 
-		if (reference==7) {
-			/*
-			if (statistics) {
-				int p = -1;
+		limit += n;
+		return true;
+	}
 
-				for (int i=0; i<8; i++) {
-					p = ((int)currentValue >> i) & 0x01;
-					tabStatistics_1b[p]++;
-				}
+	/**
+		Load the accumulator with as many whole bytes as possible (56 bits at least, when the stream allows it).
+		The underlying stream is only read when the buffer is empty, so the bytes already received are used
+		without waiting for the next ones.
+	*/
+	private void refill() throws IOException
+	{
+		if (position == limit) {
+			load();
+		}
 
-				p = ((int)currentValue) & 0xFF;
-				tabStatistics_8b[p]++;
+		if (limit - position >= 8) {
+			bitBuffer |= ((long) LONG_LE.get(buffer, position)) << bitCount;
+			position += (63 - bitCount) >>> 3;
+			bitCount |= 56;
+		}
+		else {
+			while ((bitCount <= 56) && (position < limit)) {
+				bitBuffer |= ((long) (buffer[position++] & 0xFF)) << bitCount;
+				bitCount += 8;
 			}
-			*/
+		}
+	}
 
-			// currentValue = 0x00;
-			reference = 0;
+	/**
+		Load the accumulator until at least <code>size</code> bits are available (or the end of the stream).
+	*/
+	private void fill(int size) throws IOException
+	{
+		while (bitCount < size) {
+			int previous = bitCount;
+			refill();
+			if (bitCount == previous) return;
 		}
-		else reference++;
+	}
 
-		bits++;
-		return b;
+	/**
+		Returns the next <code>size</code> bits (32 max) without consuming them.
+		Past the end of the stream, the missing bits are read as 0.
+	*/
+	public int peekBits(int size) throws IOException
+	{
+		if (bitCount < size) fill(size);
+		return (int) (bitBuffer & ((1L << size) - 1));
 	}
 
 	/**
-		Read a group of bits as an unsigned integer from the input stream.
+		Consume <code>size</code> bits previously returned by peekBits.
 	*/
-	public int readBit(int size) throws IOException
+	public void skipBits(int size) throws IOException
 	{
-		int p = 0x00;
-		try {
-			for (int i=0; i<size; i++) {
-				p = (((int) readBit()) << i) | p;
-			}
-			return p;
+		if (bitCount < size) {
+			fill(size);
+			if (bitCount < size) throw new EOFException();
 		}
-		catch (IOException e) {
-			throw new IOException();
+		bitBuffer >>>= size;
+		bitCount -= size;
+		bits += size;
+	}
+
+	/**
+		Read a group of bits (32 max) as an unsigned integer from the input stream.
+	*/
+	public int readBits(int size) throws IOException
+	{
+		if (bitCount < size) {
+			fill(size);
+			if (bitCount < size) throw new EOFException();
 		}
+		int p = (int) (bitBuffer & ((1L << size) - 1));
+		bitBuffer >>>= size;
+		bitCount -= size;
+		bits += size;
+		return p;
+	}
+
+	/**
+		Read a single binary digit (bit) from the input stream.
+	*/
+	public byte readBit() throws IOException
+	{
+		return (byte) readBits(1);
+	}
+
+	/**
+		Read a group of bits as an unsigned integer from the input stream.
+	*/
+	public int readBit(int size) throws IOException
+	{
+		return readBits(size);
 	}
 
 	/**
@@ -104,9 +183,19 @@ public class BinaryInputStream extends FilterInputStream {
 	*/
 	public byte readByte() throws IOException
 	{
-		if (reference == 0) {
-			ch = in.read();
-			if (ch < 0) throw new EOFException();
+		if ((bits & 0x07) == 0) {
+			if (bitCount >= 8) {
+				ch = (int) (bitBuffer & 0xFF);
+				bitBuffer >>>= 8;
+				bitCount -= 8;
+			}
+			else {
+				if ((position == limit) && !load()) throw new EOFException();
+				ch = buffer[position++] & 0xFF;
+
+				// the accumulator may hold a copy of the bytes following the one read
+				bitBuffer = 0;
+			}
 			byte b = (byte) ch;
 
 			if (statistics) {
@@ -127,17 +216,81 @@ public class BinaryInputStream extends FilterInputStream {
 		else throw new IOException();
 	}
 
+	/**
+		Read a byte from the input stream, the stream must be on a byte boundary.
+		Returns -1 at the end of the stream.
+	*/
+	public int read() throws IOException
+	{
+		try {
+			return readByte() & 0xFF;
+		}
+		catch (EOFException e) {
+			return -1;
+		}
+	}
+
+	/**
+		Read up to <code>len</code> bytes from the input stream, the stream must be on a byte boundary.
+	*/
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if ((bits & 0x07) != 0) throw new IOException();
+		if (len == 0) return 0;
+
+		int n = 0;
+		while ((n < len) && (bitCount >= 8)) {
+			b[off + n++] = (byte) bitBuffer;
+			bitBuffer >>>= 8;
+			bitCount -= 8;
+		}
+
+		if ((n < len) && (position < limit)) {
+			// the accumulator may hold a copy of the bytes read from the buffer
+			bitBuffer = 0;
+
+			int size = Math.min(len - n, limit - position);
+			System.arraycopy(buffer, position, b, off + n, size);
+			position += size;
+			n += size;
+		}
+
+		if (n == 0) {
+			n = in.read(b, off, len);
+			if (n <= 0) return -1;
+		}
+
+		bits += 8L * n;
+		return n;
+	}
+
+	public int available() throws IOException
+	{
+		return (bitCount >> 3) + (limit - position) + in.available();
+	}
+
+	public long skip(long n) throws IOException
+	{
+		long skipped = 0;
+		while ((skipped < n) && (read() >= 0)) skipped++;
+		return skipped;
+	}
+
+	public boolean markSupported() {
+		return false;
+	}
+
 	/**
 		Returns the number of bits read from this data input stream.
 	*/
-	public int getBits() {
+	public long getBits() {
 		return bits;
 	}
 
 	/**
 		Returns the number of bytes read from this data input stream.
 	*/
-	public int size() {
+	public long size() {
 		return (bits/8);
 	}
 
@@ -9,28 +9,50 @@ package binary;
 */
 
 import java.io.*;
+import java.lang.invoke.*;
+import java.nio.ByteOrder;
 
 /**
 	<p>A binary output stream let an application write binary data types
 	(as a byte or a group of bits) from an underlying output stream.</p>
+
+	<p>The bits are packed into a 64-bit accumulator (the first bit written is the lowest one),
+	which is stored 32 bits at a time into an internal buffer written by blocks into the underlying stream.</p>
 */
 
 public class BinaryOutputStream extends FilterOutputStream
 {
 
-	private byte currentValue;
-	private byte reference;
-	private int bits = 0;
+	static int BUFFER_SIZE = 8192;
+
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	// the whole bytes not written into the underlying stream yet
+	private byte[] buffer;
+	private int position = 0;
+
+	// the bits not stored into the buffer yet
+	private long bitBuffer = 0;
+	private int bitCount = 0;
+
+	private long bits = 0;
 
 	private boolean statistics = false;
 	public int[] tabStatistics_1b = null;
 	public int[] tabStatistics_8b = null;
 
 	public BinaryOutputStream(OutputStream out)
+	{
+		this(out, BUFFER_SIZE);
+	}
+
+	public BinaryOutputStream(OutputStream out, int size)
 	{
 		super(out);
-		currentValue = 0x00;
-		reference = 0;
+		buffer = new byte[Math.max(size, 16)];
+		bitBuffer = 0;
+		bitCount = 0;
 		bits = 0;
 
 		if (statistics) {
@@ -48,48 +70,53 @@ public class BinaryOutputStream extends FilterOutputStream
 	*/
 	public void writeBit(byte b) throws IOException
 	{
-		if (b == 0x01) {
-			currentValue = (byte) ( currentValue + (0x01 << reference) );
-		}
-
-		if (reference==7) {
-
-			if (statistics) {
-				int p = -1;
+		writeBit(b & 0x01, 1);
+	}
 
-				for (int i=0; i<8; i++) {
-					p = ((int)currentValue >> i) & 0x01;
-					tabStatistics_1b[p]++;
-				}
+	/**
+		Write a group of bits (32 max) as a unsigned integer into the output stream.
+	*/
+	public void writeBit(int p, int size) throws IOException
+	{
+		bitBuffer |= (p & ((1L << size) - 1)) << bitCount;
+		bitCount += size;
+		bits += size;
 
-				p = ((int)currentValue) & 0xFF;
-				tabStatistics_8b[p]++;
-			}
+		if (bitCount >= 32) {
+			if (position + 8 > buffer.length) flushBuffer();
 
-			out.write(currentValue);
-			currentValue = 0x00;
-			reference = 0;
+			LONG_LE.set(buffer, position, bitBuffer);
+			position += 4;
+			bitBuffer >>>= 32;
+			bitCount -= 32;
 		}
-		else reference++;
-
-		bits++;
 	}
 
 	/**
-		Write a group of bits as a unsigned integer into the output stream.
+		Write the first <code>size</code> bits of an array, as written by another binary output stream
+		(the first bit is the lowest bit of the first byte).
 	*/
-	public void writeBit(int p, int size) throws IOException
+	public void writeBits(byte[] b, long size) throws IOException
 	{
-		byte b = 0x00;
-		try {
-			for (int i=0; i<size; i++) {
-				b = (byte) ((p >> i) & 0x01);
-				writeBit(b);
+		int off = 0;
+
+		if ((bits & 0x07) == 0) {
+			off = (int) (size >>> 3);
+			write(b, 0, off);
+		}
+		else {
+			while (size - 8L * off >= 32) {
+				writeBit((int) INT_LE.get(b, off), 32);
+				off += 4;
 			}
 		}
-		catch (IOException e) {
-			throw new IOException();
+
+		while (size - 8L * off >= 8) {
+			writeBit(b[off++], 8);
 		}
+
+		int rest = (int) (size - 8L * off);
+		if (rest > 0) writeBit(b[off], rest);
 	}
 
 	/**
@@ -97,13 +124,9 @@ public class BinaryOutputStream extends FilterOutputStream
 	*/
 	public void writeEOF() throws IOException
 	{
+		int reference = (int) (bits & 0x07);
 		if (reference != 0) {
-			try {
-				writeBit(0, 8-reference);
-			}
-			catch (IOException e) {
-				throw new IOException();
-			}
+			writeBit(0, 8-reference);
 		}
 	}
 
@@ -112,45 +135,100 @@ public class BinaryOutputStream extends FilterOutputStream
 	*/
 	public void writeByte(byte b) throws IOException
 	{
-		if (reference == 0) {
+		if ((bits & 0x07) == 0) {
+			writeBit(b, 8);
+		}
+		else throw new IOException();
+	}
+
+	/**
+		Write a byte into the output stream, the stream must be on a byte boundary.
+	*/
+	public void write(int b) throws IOException
+	{
+		writeByte((byte) b);
+	}
+
+	/**
+		Write <code>len</code> bytes into the output stream, the stream must be on a byte boundary.
+	*/
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if ((bits & 0x07) != 0) throw new IOException();
+
+		storeBytes();
+		bits += 8L * len;
+
+		while (len > 0) {
+			if (position == buffer.length) flushBuffer();
+
+			int size = Math.min(len, buffer.length - position);
+			System.arraycopy(b, off, buffer, position, size);
+			position += size;
+			off += size;
+			len -= size;
+		}
+	}
+
+	/**
+		Store the whole bytes of the accumulator into the buffer.
+	*/
+	private void storeBytes() throws IOException
+	{
+		while (bitCount >= 8) {
+			if (position == buffer.length) flushBuffer();
+
+			buffer[position++] = (byte) bitBuffer;
+			bitBuffer >>>= 8;
+			bitCount -= 8;
+		}
+	}
 
-			if (statistics) {
+	/**
+		Write the buffer into the underlying stream.
+	*/
+	private void flushBuffer() throws IOException
+	{
+		if (statistics) {
+			for (int j=0; j<position; j++) {
 				int p = -1;
 
 				for (int i=0; i<8; i++) {
-					p = ((int)b >> i) & 0x01;
+					p = ((int)buffer[j] >> i) & 0x01;
 					tabStatistics_1b[p]++;
 				}
 
-				p = ((int)b) & 0xFF;
+				p = ((int)buffer[j]) & 0xFF;
 				tabStatistics_8b[p]++;
 			}
-
-			out.write(b);
-			bits = bits + 8;
 		}
-		else throw new IOException();
+
+		if (position > 0) out.write(buffer, 0, position);
+		position = 0;
 	}
 
 	/**
 		<p>Flushes this data output stream.</p>
-		<p>This forces any buffered output bytes to be written out to the stream.</p>
+		<p>This forces any buffered output bytes to be written out to the stream.
+		The bits of an incomplete byte are kept until the byte is completed (see writeEOF).</p>
 	*/
 	public void flush() throws IOException {
+		storeBytes();
+		flushBuffer();
 		out.flush();
 	}
 
 	/**
 		Returns the number of bits written to this data output stream.
 	*/
-	public int getBits() {
+	public long getBits() {
 		return bits;
 	}
 
 	/**
 		Returns the number of bytes written to this data output stream.
 	*/
-	public int size() {
+	public long size() {
 		return (bits/8);
 	}
 
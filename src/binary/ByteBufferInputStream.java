@@ -0,0 +1,54 @@
+package binary;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import java.nio.*;
+
+/**
+	<p>A byte buffer input stream read the remaining bytes of a heap or direct byte buffer,
+	the position of the buffer is moved forward as the bytes are read.</p>
+*/
+public final class ByteBufferInputStream extends InputStream {
+
+	private ByteBuffer buffer;
+
+	public ByteBufferInputStream(ByteBuffer _buffer)
+	{
+		buffer = _buffer;
+	}
+
+	public int read()
+	{
+		if (!buffer.hasRemaining()) return -1;
+		return buffer.get() & 0xFF;
+	}
+
+	public int read(byte[] b, int off, int len)
+	{
+		if (len == 0) return 0;
+		if (!buffer.hasRemaining()) return -1;
+
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		return n;
+	}
+
+	public long skip(long n)
+	{
+		int size = (int) Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + size);
+		return size;
+	}
+
+	public int available()
+	{
+		return buffer.remaining();
+	}
+}
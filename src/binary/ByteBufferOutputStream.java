@@ -0,0 +1,36 @@
+package binary;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import java.nio.*;
+
+/**
+	<p>A byte buffer output stream write into a heap or direct byte buffer, from its position up to its limit.</p>
+	<p>A BufferOverflowException is thrown when the buffer is full.</p>
+*/
+public final class ByteBufferOutputStream extends OutputStream {
+
+	private ByteBuffer buffer;
+
+	public ByteBufferOutputStream(ByteBuffer _buffer)
+	{
+		buffer = _buffer;
+	}
+
+	public void write(int b)
+	{
+		buffer.put((byte) b);
+	}
+
+	public void write(byte[] b, int off, int len)
+	{
+		buffer.put(b, off, len);
+	}
+}
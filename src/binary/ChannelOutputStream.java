@@ -0,0 +1,76 @@
+package binary;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+	<p>A channel output stream write into a file channel through a large direct buffer
+	(1 MB by default), so the bytes are written to the file by the system without an intermediate copy.</p>
+*/
+public final class ChannelOutputStream extends OutputStream {
+
+	static int BUFFER_SIZE = (1 << 20);
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+
+	public ChannelOutputStream(String file) throws IOException
+	{
+		this(new RandomAccessFile(file, "rw").getChannel(), BUFFER_SIZE);
+		channel.truncate(0);
+	}
+
+	public ChannelOutputStream(FileChannel _channel, int size)
+	{
+		channel = _channel;
+		buffer = ByteBuffer.allocateDirect(size);
+	}
+
+	public void write(int b) throws IOException
+	{
+		if (!buffer.hasRemaining()) flushBuffer();
+		buffer.put((byte) b);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			if (!buffer.hasRemaining()) flushBuffer();
+
+			int size = Math.min(len, buffer.remaining());
+			buffer.put(b, off, size);
+			off += size;
+			len -= size;
+		}
+	}
+
+	/**
+		Write the buffer into the channel.
+	*/
+	private void flushBuffer() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	public void flush() throws IOException
+	{
+		flushBuffer();
+	}
+
+	public void close() throws IOException
+	{
+		flushBuffer();
+		channel.close();
+	}
+}
@@ -0,0 +1,107 @@
+package binary;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+	<p>A mapped input stream read a file through a memory mapping, without copy into a stream buffer.</p>
+
+	<p>A mapping is limited to 2 GB, so a bigger file is mapped region by region (MAP_SIZE bytes at a time),
+	the next region is mapped when the current one is consumed.</p>
+*/
+public final class MappedInputStream extends InputStream {
+
+	// the size of a mapped region, lowered by the tests to map a small file by several regions
+	public static long MAP_SIZE = (1L << 30);
+
+	private FileChannel channel;
+	private long length;
+
+	// the file position of the current region
+	private long offset = 0;
+	private MappedByteBuffer region;
+
+	public MappedInputStream(String file) throws IOException
+	{
+		this(new RandomAccessFile(file, "r").getChannel());
+	}
+
+	public MappedInputStream(FileChannel _channel) throws IOException
+	{
+		channel = _channel;
+		length = channel.size();
+		region = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(length, MAP_SIZE));
+	}
+
+	/**
+		Map the next region of the file, returns false at the end of the file.
+	*/
+	private boolean next() throws IOException
+	{
+		offset += region.capacity();
+		if (offset >= length) return false;
+
+		region = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(length - offset, MAP_SIZE));
+		return true;
+	}
+
+	/**
+		Read the next byte (0 to 255), or -1 at the end of the file.
+	*/
+	public int read() throws IOException
+	{
+		if (!region.hasRemaining() && !next()) return -1;
+		return region.get() & 0xFF;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0) return 0;
+		if (!region.hasRemaining() && !next()) return -1;
+
+		int n = Math.min(len, region.remaining());
+		region.get(b, off, n);
+		return n;
+	}
+
+	public long skip(long n) throws IOException
+	{
+		long skipped = 0;
+
+		while (skipped < n) {
+			if (!region.hasRemaining() && !next()) break;
+
+			int size = (int) Math.min(n - skipped, region.remaining());
+			region.position(region.position() + size);
+			skipped += size;
+		}
+		return skipped;
+	}
+
+	public int available() throws IOException
+	{
+		return (int) Math.min(length - offset - region.position(), Integer.MAX_VALUE);
+	}
+
+	/**
+		Returns the size of the file.
+	*/
+	public long length()
+	{
+		return length;
+	}
+
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
@@ -9,7 +9,6 @@ package zpp;
 */
 
 import java.util.zip.*;
-import java.util.*;
 import java.io.*;
 import java.net.*;
 import binary.*;
@@ -22,386 +21,362 @@ import binary.*;
 	<li>each word and syllabe were associated with a frequence information (number of bits to code it)</li>
 	<li>so the dictionnary was compressed by the huffman method.</li>
 
-	<p>Two binary trees will be build for expand and compress purpose.<p>
+	<p>A trie of the words (a DoubleArrayTrie) is build for the compressor, and the bytes of each word
+	and a HuffmanDecoder of the codes for the expander.<p>
+
+	<p>A custom dictionnary can be built from a sample of the data by a DicoTrainer, and written by write.
+	Its identifier (a CRC32 of the words and their code lengths) is recorded in the header of the compressed data,
+	so the data is only expanded with the same dictionnary.</p>
+
+	<p>A Dico is immutable once loaded, so it is shared by all the compressors and expanders without locking.
+	The default dictionnary (english.dico) is only loaded by the first call to get() :
+	a compressor refers to no dictionnary unless one is given to LZCompress.setDico.</p>
 */
 
-public class Dico {
+public final class Dico {
 
-	public static int dico_max = 8192;
-	public static BinaryTree[] tabStatistics_dico = new BinaryTree[dico_max];
-	public static BinaryTree tree_dico_compress = new BinaryTree();
-	public static BinaryTree tree_dico_expand = new BinaryTree();
+	public static final int dico_max = 8192;
 
-	static BinaryTree[] tabStatistics_len;
+	// the version of the format written by write (the first byte of the file, not checked by load)
+	public static final int VERSION = 1;
 
-	static int len_max = 26;
+	// the longest word (its length is written on 5 bits)
+	public static final int WORD_MAX = 31;
 
+	static int len_max = 26;
 	static int maxBits = 19;
-	static int[] count = new int[maxBits];
-	static int[] next_code = new int[maxBits];
-
-	protected PrintWriter out;
 
 	static String dicoFileName = "english.dico";
-	static String jarFileName = null;
 
-	public Dico () {
-	}
-
-	public static void load_dico(String _jarFileName, String _dicoFileName)
-	{
-		jarFileName = _jarFileName;
-		dicoFileName = _dicoFileName;
-		load_dico();
-	}
+	// the words, the length and the codes of each word (indexed by the word number)
+	private final String[] words;
+	private final int[] nbBits;
+	private final int[] compressCode;
+	private final int[] expandCode;
+	private final byte[][] bytes;
 
-	public static void load_dico()
-	{
-		try {
+	// the trie of the words for the compressor, the decoder of the codes for the expander
+	private final DoubleArrayTrie trie;
+	private final HuffmanDecoder decoder;
 
-			for (int i=0; i < maxBits; i++) {
-				count[i] = 0;
-				next_code[i] = 0;
-			}
+	private final int id;
 
-			BinaryInputStream bis;
+	// the default dictionnary, loaded by the first call to get
+	private static Dico instance = null;
 
-			if (jarFileName != null) {
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Returns the default dictionnary (loaded by the first call).</p>
+		<p>An IOException is thrown when english.dico is not found, or is not a valid dictionnary.</p>
+	*/
+	public static synchronized Dico get() throws IOException
+	{
+		if (instance == null) instance = loadDefault();
+		return instance;
+	}
 
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Build a dictionnary from its words and the length of the code of each word (0 for an unused word).</p>
+	*/
+	private Dico (String[] _words, int[] _nbBits) throws IOException
+	{
+		words = _words;
+		nbBits = _nbBits;
+		compressCode = new int[words.length];
+		expandCode = new int[words.length];
 
-				URL newURL = new URL(jarFileName);
-				ZipInputStream zis = new ZipInputStream(newURL.openConnection().getInputStream());
+		int[] count = new int[maxBits];
+		int[] next_code = new int[maxBits];
 
-				ZipEntry ze;
-				while ( ((ze = zis.getNextEntry())!= null)
-					&& (!ze.getName().equals(dicoFileName)) ) {
-				}
+		for (int i=0; i<words.length; i++) count[ nbBits[i] ]++;
 
-				int size = 21654;
-				byte[] buffer = new byte[size];
-
-				final int N = 1024;
-				byte[] temp = new byte[N];
-				int ln = 0, diff = size;
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				while (diff > 0 && (ln = zis.read(temp, 0, Math.min(N, size))) != -1) {
-					baos.write(temp,0,ln);
-					diff -= ln;
-				}
-				buffer = baos.toByteArray();
-				baos.close();
-				zis.close();
+		int code = 0;
+		count[0] = 0;
+		for (int bits = 1; bits < maxBits; bits++) {
+			code = (code + count[bits-1]) << 1;
+			next_code[bits] = code;
+		}
 
-				bis = new BinaryInputStream(new ByteArrayInputStream(buffer));
-			}
-			else {
-				bis = new BinaryInputStream(new FileInputStream(dicoFileName));
+		for (int i=0; i<words.length; i++) {
+			int len = nbBits[i];
+			if (len != 0) {
+				expandCode[i] = next_code[len];
+				compressCode[i] = reverse(next_code[len], len);
+				next_code[len]++;
 			}
+		}
 
-			try {
-				String str = "";
-				int frequence = 0;
-				int word_count = 0;
-				int word_length = 0;
-				int word_max = 0;
-
-				tabStatistics_len = new BinaryTree[len_max];
-				for (int i=0; i<len_max; i++) {
-					tabStatistics_len[i] = new BinaryTree(i,0);
-				}
-
-				bis.readBit(8);
-				word_max = bis.readBit(16);
-
-				for (int i=0; i<len_max; i++) {
-					int value = bis.readBit(4);
-					tabStatistics_len[i].nbBits = value;
-					count[value]++;
-					// System.out.println(i + "> " + value);
-				}
-
-				int code = 0;
-				count[0] = 0;
-				for (int bits = 1; bits < maxBits; bits++) {
-					code = (code + count[bits-1]) << 1;
-					next_code[bits] = code;
-				}
-
-				BinaryTree tree_len = new BinaryTree(-1,0);
-
-				for (int i=0; i<len_max; i++) {
-					int len = tabStatistics_len[i].nbBits;
-					if (len != 0) {
-						tabStatistics_len[i].compressCode = next_code[len];
-						convert_code_to_tree_compress(tree_len, tabStatistics_len[i], len);
-						next_code[len]++;
-					}
-				}
-
-				for (int i=0; i < maxBits; i++) {
-					count[i] = 0;
-					next_code[i] = 0;
-				}
-
-
-				for (int i=0; i<word_max; i++)
-				{
-					word_length = (int) bis.readBit(5);
-					// System.out.println("word_length" + "> " + word_length);
-					frequence = (int) bis.readBit(5);
-					// System.out.println("frequence" + "> " + frequence);
+		// only the words with a code are indexed
+		String[] coded = new String[words.length];
+		for (int i=0; i<words.length; i++) {
+			if (nbBits[i] != 0) coded[i] = words[i];
+		}
+		trie = new DoubleArrayTrie(coded);
 
-					for (int j=0; j < word_length; j++)
-					{
-						BinaryTree node = null;
-						boolean find = false;
-						int value = -1;
-						byte b = 0;
+		bytes = new byte[words.length][];
+		for (int i=0; i<words.length; i++) {
+			bytes[i] = words[i].getBytes("ISO-8859-1");
+		}
 
-						node = tree_len;
-						while (!find) {
-							b = bis.readBit();
-							// System.out.print(Binary.toSingleBinaryString(b));
+		decoder = new HuffmanDecoder(nbBits, words.length, 10);
 
-							if (b == 0x00)	node = node.node_0;
-							else			node = node.node_1;
+		CRC32 crc = new CRC32();
+		for (int i=0; i<words.length; i++) {
+			crc.update(bytes[i]);
+			crc.update(0);
+			crc.update(nbBits[i]);
+		}
+		id = (int) crc.getValue();
+	}
 
-							if (node == null) throw new Exception();
+	/**
+		<p>Build a dictionnary from its words (made of the letters 'a' to 'z', WORD_MAX letters max)
+		and the length of the code of each word (0 for an unused word, less than 19 bits).</p>
+		<p>An IOException is thrown when a word is not valid, or when the code lengths are not a valid Huffman code.</p>
+	*/
+	public static Dico create(String[] words, int[] nbBits) throws IOException
+	{
+		if ((words.length != nbBits.length) || (words.length > dico_max)) throw new IOException("invalid dictionnary");
 
-							value = node.codeAscii;
-							if (value != -1) find = true;
-						}
+		for (int i=0; i<words.length; i++) {
+			if ((words[i].length() > WORD_MAX) || (nbBits[i] < 0) || (nbBits[i] >= maxBits)) throw new IOException("invalid word " + words[i]);
 
-						str = str + (char) (value + 0x61);
-					}
+			for (int j=0; j<words[i].length(); j++) {
+				if ((words[i].charAt(j) < 'a') || (words[i].charAt(j) > 'z')) throw new IOException("invalid word " + words[i]);
+			}
+		}
 
-					// System.out.println("str = " + str);
+		return new Dico(words.clone(), nbBits.clone());
+	}
 
-					tabStatistics_dico[word_count] = new BinaryTree(word_count, str, 0);
-					tabStatistics_dico[word_count].nbBits = frequence;
-					count[frequence]++;
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Load the default dictionnary from the current directory, or from the class path.</p>
+	*/
+	private static Dico loadDefault() throws IOException
+	{
+		InputStream is;
 
-					word_length = 0;
-					str = "";
-					frequence = 0;
-					word_count ++;
+		File file = new File(dicoFileName);
+		if (file.exists()) is = new FileInputStream(file);
+		else is = Dico.class.getResourceAsStream("/" + dicoFileName);
 
-				}
-
-			}
-			catch (EOFException e) {
-				// System.out.println(e);
-			}
-
-			bis.close();
+		if (is == null) throw new FileNotFoundException(dicoFileName);
 
+		try {
+			return load(new BufferedInputStream(is));
 		}
-		catch (Exception e) {
-			System.out.println("load_dico " + e);
+		finally {
+			is.close();
 		}
+	}
 
-		// ------------- building the tree_dico_compress ---------------
-		// ------------- building the tree_dico_expand -----------------
-
-		int compressCode = 0;
-		count[0] = 0;
-		for (int bits = 1; bits < maxBits; bits++) {
-			compressCode = (compressCode + count[bits-1]) << 1;
-			next_code[bits] = compressCode;
+	/**
+		<p>Returns an empty dictionnary.</p>
+	*/
+	public static Dico empty()
+	{
+		try {
+			return new Dico(new String[0], new int[0]);
 		}
-
-		BinaryTree node = null;
-
-		for (int i=0; i<dico_max; i++)
-		{
-			node = tabStatistics_dico[i];
-
-			if (node != null) {
-				int len = node.nbBits;
-				if (len != 0) {
-					node.compressCode = reverse(next_code[len],len);
-					convert_code_to_tree_compress(tree_dico_compress, tabStatistics_dico[i], len);
-					next_code[len]++;
-				}
-			}
+		catch (IOException e) {
+			throw new InternalError(e.toString());
 		}
+	}
 
-		int expandCode = 0;
-		count[0] = 0;
-		for (int bits = 1; bits < maxBits; bits++) {
-			expandCode = (expandCode + count[bits-1]) << 1;
-			next_code[bits] = expandCode;
+	/**
+		<p>Load a dictionnary from a file (as written by a DicoTrainer).</p>
+	*/
+	public static Dico load(String fileName) throws IOException
+	{
+		InputStream is = new BufferedInputStream(new FileInputStream(fileName));
+		try {
+			return load(is);
 		}
-
-		for (int i=0; i<dico_max; i++)
-		{
-			node = tabStatistics_dico[i];
-
-			if (node != null) {
-				int len = node.nbBits;
-				if (len != 0) {
-					node.expandCode = next_code[len];
-					convert_code_to_tree_expand(tree_dico_expand, tabStatistics_dico[i], len);
-					next_code[len]++;
-				}
-			}
+		finally {
+			is.close();
 		}
+	}
 
-		// print(tabStatistics_dico);
-		for (int i=0; i<dico_max; i++) {
-			node = tabStatistics_dico[i];
+	/**
+		<p>Load a dictionnary from an entry of a zip (or jar) file, given by its URL.</p>
+	*/
+	public static Dico load(String jarFileName, String dicoFileName) throws IOException
+	{
+		ZipInputStream zis = new ZipInputStream(new URL(jarFileName).openConnection().getInputStream());
 
-			if (node != null) {
-				// System.out.println("i = " + i + ", " + "node = " + node.word);
-				convert_word_to_tree(tree_dico_compress, node, node.word.length());
+		try {
+			ZipEntry ze;
+			while (((ze = zis.getNextEntry()) != null) && (!ze.getName().equals(dicoFileName))) {
 			}
-		}
-	}
 
+			if (ze == null) throw new FileNotFoundException(dicoFileName);
 
-	// ---------------------------------------------------------------------------------------------
-	static public int reverse(int value, int size) {
-		int result = 0x00;
-		for (int i=0; i<size; i++) {
-			result = (result << 1 ) | ((value >> i) & 0x01);
+			return load(new ByteArrayInputStream(zis.readAllBytes()));
 		}
-		return result;
-	}
-
-	// ---------------------------------------------------------------------------------------------
-	static public void convert_tree_to_code(BinaryTree tree, int nbBits) {
-		if (tree.isLeafNode()) {
-			tree.nbBits = nbBits;
-			// tree.toString();
-			count[nbBits]++;
-			return;
+		finally {
+			zis.close();
 		}
-
-		nbBits ++;
-
-		convert_tree_to_code(tree.node_0, nbBits);
-		convert_tree_to_code(tree.node_1, nbBits);
 	}
 
+	/**
+		<p>Load a dictionnary : the number of words, the Huffman code lengths of the 26 letters,
+		then the length, the code length and the letters of each word.</p>
+	*/
+	public static Dico load(InputStream is) throws IOException
+	{
+		BinaryInputStream bis = new BinaryInputStream(is);
 
-	// ---------------------------------------------------------------------------------------------
-	static public BinaryTree convert_code_to_tree_compress(BinaryTree tree,
-															BinaryTree node,
-															int nbBits) {
-		if (nbBits == 0) {
-			return node;
-		}
+		String[] words = new String[dico_max];
+		int[] nbBits = new int[dico_max];
+		int word_count = 0;
 
-		if (tree == null) tree = new BinaryTree(-1,0);
+		// the version of the format
+		bis.readBits(8);
+		int word_max = Math.min(bis.readBits(16), dico_max);
 
-		int currentBit = ( (node.compressCode >> (nbBits - 1)) & 0x01 );
-		nbBits --;
+		int[] nbBits_len = new int[len_max];
+		for (int i=0; i<len_max; i++) nbBits_len[i] = bis.readBits(4);
 
-		if (currentBit == 0x00)	tree.node_0 = convert_code_to_tree_compress(tree.node_0, node, nbBits);
-		else					tree.node_1 = convert_code_to_tree_compress(tree.node_1, node, nbBits);
+		HuffmanDecoder decoder_len = new HuffmanDecoder(nbBits_len, len_max, 8);
 
-		return tree;
-	}
+		try {
+			for (int i=0; i<word_max; i++) {
+				int word_length = bis.readBits(5);
+				int frequence = bis.readBits(5);
+				if (frequence >= maxBits) throw new IOException("invalid dictionnary");
+
+				StringBuilder str = new StringBuilder(word_length);
+				for (int j=0; j < word_length; j++) {
+					str.append((char) (decoder_len.decode(bis) + 0x61));
+				}
 
-	// ---------------------------------------------------------------------------------------------
-	static public BinaryTree convert_code_to_tree_expand(BinaryTree tree,
-														BinaryTree node,
-														int nbBits) {
-		if (nbBits == 0) {
-			return node;
+				words[word_count] = str.toString();
+				nbBits[word_count] = frequence;
+				word_count ++;
+			}
+		}
+		catch (EOFException e) {
+			// a truncated dictionnary keeps the words read
 		}
 
-		if (tree == null) tree = new BinaryTree(-1,0);
-
-		int currentBit = ( (node.expandCode >> (nbBits - 1)) & 0x01 );
-		nbBits --;
-
-		if (currentBit == 0x00)	tree.node_0 = convert_code_to_tree_expand(tree.node_0, node, nbBits);
-		else					tree.node_1 = convert_code_to_tree_expand(tree.node_1, node, nbBits);
-
-		return tree;
+		return new Dico(java.util.Arrays.copyOf(words, word_count), java.util.Arrays.copyOf(nbBits, word_count));
 	}
 
 	// ---------------------------------------------------------------------------------------------
-	static public void convert_word_to_tree(BinaryTree tree,
-											BinaryTree node,
-											int len)
+	/**
+		<p>Write the dictionnary in the format read by load, the letters are coded with the Huffman codes of their frequences.</p>
+	*/
+	public void write(OutputStream os) throws IOException
 	{
-		int i = -1;
-		while (len != 0) {
-			i = ((int) node.word.charAt(node.word.length() - len)) - 0x61;
-			len --;
+		BinaryOutputStream bos = new BinaryOutputStream(os);
 
-			if (len != 0) {
-				if (tree.tab[i] == null) tree.tab[i] = new BinaryTree();
-				tree = tree.tab[i];
+		HuffmanEncoder letters = new HuffmanEncoder(len_max);
+		for (int i=0; i<words.length; i++) {
+			for (int j=0; j<bytes[i].length; j++) letters.freq[ bytes[i][j] - 'a' ] ++;
+		}
+		letters.build(new Huffman(), Huffman.MAX_BITS);
+
+		bos.writeBit(VERSION, 8);
+		bos.writeBit(words.length, 16);
+		for (int i=0; i<len_max; i++) bos.writeBit(letters.length[i], 4);
+
+		for (int i=0; i<words.length; i++) {
+			bos.writeBit(bytes[i].length, 5);
+			bos.writeBit(nbBits[i], 5);
+			for (int j=0; j<bytes[i].length; j++) {
+				int c = bytes[i][j] - 'a';
+				bos.writeBit(letters.code[c], letters.length[c]);
 			}
 		}
 
-		if (tree.tab[i] == null) tree.tab[i] = new BinaryTree();
-		tree.tab[i].word = node.word;
-		tree.tab[i].codeAscii = node.codeAscii;
-		tree.tab[i].compressCode = node.compressCode;
-		tree.tab[i].expandCode = node.expandCode;
-		tree.tab[i].nbBits = node.nbBits;
-
-		// tree.tab[i] = node;
+		bos.writeEOF();
+		bos.flush();
 	}
 
-
-	// -----------------------------------------------------------------------------
-	static public void sort(Vector list, int low, int high)
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Returns the identifier of the dictionnary, recorded in the header of the compressed data.</p>
+	*/
+	public int id()
 	{
-		if (!list.isEmpty()) {
-			BinaryTree previous = null;
-			BinaryTree current = null;
-
-			int l = low;
-			int h = high;
-			int pivot = ((BinaryTree) list.elementAt((low + high) / 2)).frequence;
+		return id;
+	}
 
-			while (l <= h) {
-				while (((BinaryTree) list.elementAt(l)).frequence < pivot) l++;
-				while (pivot < ((BinaryTree) list.elementAt(h)).frequence) h--;
+	/**
+		<p>Returns the number of words.</p>
+	*/
+	public int size()
+	{
+		return words.length;
+	}
 
-				if (l <= h) {
+	public String word(int i)
+	{
+		return words[i];
+	}
 
-					previous = (BinaryTree) list.elementAt(l);
-					current  = (BinaryTree) list.elementAt(h);
+	/**
+		<p>Returns the length of the code of a word (0 for an unused word).</p>
+	*/
+	public int nbBits(int i)
+	{
+		return nbBits[i];
+	}
 
-					list.removeElementAt(l);
-					list.insertElementAt(current,l);
+	/**
+		<p>Returns the code of a word, reversed to be written by a BinaryOutputStream.</p>
+	*/
+	public int compressCode(int i)
+	{
+		return compressCode[i];
+	}
 
-					list.removeElementAt(h);
-					list.insertElementAt(previous,h);
+	public int expandCode(int i)
+	{
+		return expandCode[i];
+	}
 
-					l++;
-					h--;
-				}
-			}
+	/**
+		<p>Returns the bytes of a word (shared, not to be modified).</p>
+	*/
+	public byte[] bytes(int i)
+	{
+		return bytes[i];
+	}
 
-			// Sort the low part of the list :
-			if (low < h) sort(list, low, h);
+	/**
+		<p>Read the code of a word from the input stream, returns the number of the word.</p>
+	*/
+	public int decode(BinaryInputStream bis) throws IOException
+	{
+		return decoder.decode(bis);
+	}
 
-			// Sort the high part of the list :
-			if (l < high) sort(list, l, high);
-		}
+	/**
+		<p>Returns the trie of the words, to search for a word byte by byte.</p>
+	*/
+	public DoubleArrayTrie trie()
+	{
+		return trie;
 	}
 
+	/**
+		<p>Returns the number of the longest word starting at <code>b[off]</code> and ending before <code>b[end]</code>
+		(-1 when no word is found).</p>
+	*/
+	public int longestMatch(byte[] b, int off, int end)
+	{
+		return trie.longestMatch(b, off, end);
+	}
 
 	// ---------------------------------------------------------------------------------------------
-	static public void print(BinaryTree[] tab)
-	{
-		int size = 0;
-		for (int i=0; i< tab.length; i++) {
-			BinaryTree node = tab[i];
-			if ((node != null) && (node.frequence > 0)) {
-				size ++;
-				if (node.word != null) System.out.print(node.word + " ");
-				node.toString();
-			}
+	static public int reverse(int value, int size) {
+		int result = 0x00;
+		for (int i=0; i<size; i++) {
+			result = (result << 1 ) | ((value >> i) & 0x01);
 		}
-		System.out.println("array size is " +  size);
+		return result;
 	}
-
 }
@@ -0,0 +1,204 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import java.util.*;
+
+/**
+	<p>A DicoTrainer build a dictionnary from a sample of the data to compress (a directory of files, or byte arrays).</p>
+
+	<p>The candidate words are the runs of lower case letters of the samples (the only words a Dico can hold).
+	A word saves its letters each time the back window does not hold it yet, mostly its first occurrence in a message :
+	so a word is valued by the number of samples where it occurs times its length,
+	and the code of a word is built from the same count.</p>
+	<p>A word found in a single sample is not kept (unless there is a single sample).</p>
+*/
+public class DicoTrainer {
+
+	// the shortest word kept (a shorter one costs more than its letters)
+	static int MIN_LENGTH = 3;
+
+	// for each word : the number of samples where it occurs, and the last sample where it was counted
+	private HashMap<String, int[]> counts = new HashMap<String, int[]>();
+	private int samples = 0;
+
+	public DicoTrainer ()
+	{
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Add a sample (a message or a file).</p>
+	*/
+	public void addSample(byte[] b, int off, int len)
+	{
+		samples ++;
+
+		int end = off + len;
+		int p = off;
+		while (p < end) {
+			if ((b[p] < 'a') || (b[p] > 'z')) {
+				p++;
+				continue;
+			}
+
+			int start = p;
+			while ((p < end) && (b[p] >= 'a') && (b[p] <= 'z')) p++;
+
+			if ((p - start >= MIN_LENGTH) && (p - start <= Dico.WORD_MAX)) {
+				String word = new String(b, start, p - start, java.nio.charset.StandardCharsets.ISO_8859_1);
+
+				int[] count = counts.get(word);
+				if (count == null) counts.put(word, count = new int[] { 0, -1 });
+
+				if (count[1] != samples) {
+					count[0] ++;
+					count[1] = samples;
+				}
+			}
+		}
+	}
+
+	public void addSample(byte[] b)
+	{
+		addSample(b, 0, b.length);
+	}
+
+	/**
+		<p>Add a file as a sample.</p>
+	*/
+	public void addFile(File file) throws IOException
+	{
+		addSample(java.nio.file.Files.readAllBytes(file.toPath()));
+	}
+
+	/**
+		<p>Add each file of a directory (and of its sub directories) as a sample, returns the number of files added.</p>
+	*/
+	public int addDirectory(File dir) throws IOException
+	{
+		File[] files = dir.listFiles();
+		if (files == null) throw new FileNotFoundException(dir.getPath());
+
+		// the dictionnary does not depend on the order of the directory
+		Arrays.sort(files);
+
+		int n = 0;
+		for (int i=0; i<files.length; i++) {
+			if (files[i].isDirectory()) n += addDirectory(files[i]);
+			else if (files[i].isFile()) {
+				addFile(files[i]);
+				n ++;
+			}
+		}
+		return n;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Build a dictionnary of the <code>max_words</code> most valuable words (Dico.dico_max at most).</p>
+	*/
+	public Dico train(int max_words) throws IOException
+	{
+		int min_samples = Math.min(2, samples);
+
+		ArrayList<String> candidates = new ArrayList<String>();
+		for (Map.Entry<String, int[]> e : counts.entrySet()) {
+			if (e.getValue()[0] >= min_samples) candidates.add(e.getKey());
+		}
+
+		// the most valuable words first, and for a same value by alphabetic order
+		candidates.sort((a, b) -> {
+			long va = (long) counts.get(a)[0] * a.length();
+			long vb = (long) counts.get(b)[0] * b.length();
+			if (va != vb) return (va > vb) ? -1 : 1;
+			return a.compareTo(b);
+		});
+
+		int n = Math.min(candidates.size(), Math.min(max_words, Dico.dico_max));
+		String[] words = new String[n];
+		int[] nbBits = new int[n];
+
+		HuffmanEncoder encoder = new HuffmanEncoder(n);
+		for (int i=0; i<n; i++) {
+			words[i] = candidates.get(i);
+			encoder.freq[i] = counts.get(words[i])[0];
+		}
+		encoder.build(new Huffman(), Huffman.MAX_BITS);
+		for (int i=0; i<n; i++) nbBits[i] = encoder.length[i];
+
+		return Dico.create(words, nbBits);
+	}
+
+	/**
+		<p>Returns the number of samples added.</p>
+	*/
+	public int samples()
+	{
+		return samples;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	static public void help()
+	{
+		System.out.println("DicoTrainer v1.0, Ronan Merien, rmerien@hotmail.com");
+		System.out.println("Usage: java zpp.DicoTrainer [-n words] directory fileName");
+		System.out.println("		-n number of words of the dictionnary (8192 max, 4096 by default)");
+		System.out.println("Examples:	java zpp.DicoTrainer samples json.dico");
+		System.out.println("		build json.dico from the files of the directory samples");
+		System.out.println("		java LZCompress -d json.dico message.json");
+		System.out.println("		compress message.json with the words of json.dico");
+		System.out.println("");
+	}
+
+	/**
+		<p>Build a dictionnary from the files of a directory.</p>
+	*/
+	static public void main(String args[])
+	{
+		int max_words = 4096;
+		int arg = 0;
+
+		try {
+			while ((arg < args.length) && args[arg].startsWith("-")) {
+				String option = args[arg++];
+
+				if (option.equals("-n") && (arg < args.length)) max_words = Integer.parseInt(args[arg++]);
+				else {
+					help();
+					return;
+				}
+			}
+
+			if (arg + 2 != args.length) {
+				help();
+				return;
+			}
+
+			DicoTrainer trainer = new DicoTrainer();
+			int files = trainer.addDirectory(new File(args[arg]));
+
+			Dico dico = trainer.train(max_words);
+
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(args[arg + 1]));
+			try {
+				dico.write(os);
+			}
+			finally {
+				os.close();
+			}
+
+			System.out.println(dico.size() + " words from " + files + " files written to " + args[arg + 1]);
+		}
+		catch (Exception e) {
+			System.out.println(e);
+		}
+	}
+}
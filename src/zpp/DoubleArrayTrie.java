@@ -0,0 +1,182 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>A DoubleArrayTrie index the words of a dictionnary (made of the letters 'a' to 'z') into three arrays of integers.</p>
+
+	<p>The child of the state <code>s</code> by the letter <code>c</code> (1 to 26) is the state <code>t = base[s] + c</code>,
+	when <code>check[t] == s</code>. The number of the word ending at a state is <code>value[t] - 1</code> (0 for no word).
+	A transition is a few array reads, and the whole trie takes 12 bytes by state.</p>
+
+	<p>The trie is immutable once built.</p>
+*/
+public final class DoubleArrayTrie {
+
+	public static final int ROOT = 0;
+
+	static int ALPHABET = 26;
+	static int FREE = -1;
+
+	private int[] base;
+	private int[] check;
+	private int[] value;
+
+	// the first position which may be free, and the last position used
+	private int cursor = 2;
+	private int size = 1;
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Build the trie of the words (the word number is its index, a null, empty or not lower case word is skipped).</p>
+	*/
+	public DoubleArrayTrie (String[] words)
+	{
+		Integer[] order = new Integer[words.length];
+		int n = 0;
+		for (int i=0; i<words.length; i++) {
+			if (isWord(words[i])) order[n++] = i;
+		}
+
+		java.util.Arrays.sort(order, 0, n, (a, b) -> words[a].compareTo(words[b]));
+
+		grow(Math.max(64, 2 * n));
+		check[ROOT] = ROOT;
+
+		insert(words, order, ROOT, 0, n, 0);
+
+		base = java.util.Arrays.copyOf(base, size);
+		check = java.util.Arrays.copyOf(check, size);
+		value = java.util.Arrays.copyOf(value, size);
+	}
+
+	private static boolean isWord(String word)
+	{
+		if ((word == null) || (word.length() == 0)) return false;
+
+		for (int i=0; i<word.length(); i++) {
+			if ((word.charAt(i) < 'a') || (word.charAt(i) > 'z')) return false;
+		}
+		return true;
+	}
+
+	/**
+		<p>Add the children of the state <code>s</code> : the words order[lo] to order[hi-1] share their first <code>depth</code> letters.</p>
+	*/
+	private void insert(String[] words, Integer[] order, int s, int lo, int hi, int depth)
+	{
+		// the word ending at this state is the first one (a same word is only indexed once)
+		while ((lo < hi) && (words[ order[lo] ].length() == depth)) {
+			if (value[s] == 0) value[s] = order[lo] + 1;
+			lo++;
+		}
+
+		if (lo == hi) return;
+
+		// the letters of the children, in increasing order
+		int[] letters = new int[ALPHABET];
+		int nb_letters = 0;
+		for (int k = lo; k < hi; k++) {
+			int c = words[ order[k] ].charAt(depth) - 'a' + 1;
+			if ((nb_letters == 0) || (letters[nb_letters - 1] != c)) letters[nb_letters++] = c;
+		}
+
+		// the first base where all the children are free
+		while ((cursor < check.length) && (check[cursor] != FREE)) cursor++;
+
+		int b = Math.max(1, cursor - letters[0]);
+		while (!fits(b, letters, nb_letters)) b++;
+
+		base[s] = b;
+		for (int i=0; i<nb_letters; i++) {
+			check[b + letters[i]] = s;
+			size = Math.max(size, b + letters[i] + 1);
+		}
+
+		// the children, each one with the words of its letter
+		int k = lo;
+		for (int i=0; i<nb_letters; i++) {
+			int end = k;
+			while ((end < hi) && (words[ order[end] ].charAt(depth) - 'a' + 1 == letters[i])) end++;
+
+			insert(words, order, b + letters[i], k, end, depth + 1);
+			k = end;
+		}
+	}
+
+	private boolean fits(int b, int[] letters, int nb_letters)
+	{
+		grow(b + ALPHABET + 1);
+
+		for (int i=0; i<nb_letters; i++) {
+			if (check[b + letters[i]] != FREE) return false;
+		}
+		return true;
+	}
+
+	private void grow(int length)
+	{
+		if ((check != null) && (check.length >= length)) return;
+
+		int old = (check == null) ? 0 : check.length;
+		int capacity = Math.max(length, 2 * old);
+
+		base = (base == null) ? new int[capacity] : java.util.Arrays.copyOf(base, capacity);
+		value = (value == null) ? new int[capacity] : java.util.Arrays.copyOf(value, capacity);
+		check = (check == null) ? new int[capacity] : java.util.Arrays.copyOf(check, capacity);
+		java.util.Arrays.fill(check, old, capacity, FREE);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Returns the child of a state by a byte (-1 when no word continues with this byte).</p>
+	*/
+	public int next(int state, int b)
+	{
+		int c = b - 'a' + 1;
+		if ((c < 1) || (c > ALPHABET)) return -1;
+
+		int t = base[state] + c;
+		if ((t >= check.length) || (check[t] != state)) return -1;
+		return t;
+	}
+
+	/**
+		<p>Returns the number of the word ending at a state (-1 when no word ends there).</p>
+	*/
+	public int word(int state)
+	{
+		return value[state] - 1;
+	}
+
+	/**
+		<p>Returns the number of the longest word starting at <code>b[off]</code> and ending before <code>b[end]</code>
+		(-1 when no word is found).</p>
+	*/
+	public int longestMatch(byte[] b, int off, int end)
+	{
+		int state = ROOT;
+		int found = -1;
+
+		for (int p = off; p < end; p++) {
+			state = next(state, b[p]);
+			if (state < 0) break;
+			if (value[state] != 0) found = value[state] - 1;
+		}
+		return found;
+	}
+
+	/**
+		<p>Returns the number of states.</p>
+	*/
+	public int size()
+	{
+		return size;
+	}
+}
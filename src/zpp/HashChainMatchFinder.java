@@ -0,0 +1,146 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>The back window is indexed by a hash table on the first BREAK_EVEN bytes of each string :
+	head[] hold the last position of each hash value, and prev[] link each position
+	to the previous position with the same hash value.</p>
+
+	<p>A search only follows the chain up to max_chain positions, so it is much faster than the tree
+	on a long window but it may miss the longest string matching.</p>
+*/
+public class HashChainMatchFinder extends MatchFinder {
+
+	static int HASH_BITS = 15;
+	static int NIL = -1;
+
+	public int max_chain;
+
+	// stop searching as soon as a string matching of nice_length bytes is found
+	public int nice_length = Integer.MAX_VALUE;
+
+	int[] head;
+	int[] prev;
+
+	public HashChainMatchFinder (int _max_chain)
+	{
+		max_chain = _max_chain;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public void reset()
+	{
+		if (head == null) head = new int[1 << HASH_BITS];
+		if ((prev == null) || (prev.length != window_size)) prev = new int[window_size];
+
+		java.util.Arrays.fill(head, NIL);
+		java.util.Arrays.fill(prev, NIL);
+	}
+
+	/**
+		<p>Only the chains of the positions below <code>used</code> are cleared (their hash values are computed again).</p>
+	*/
+	public void reset(int used)
+	{
+		if ((head == null) || (prev == null) || (prev.length != window_size) || (used >= window_size)) {
+			reset();
+			return;
+		}
+
+		for (int p=0; p<used; p++) {
+			head[hash(p)] = NIL;
+			prev[p] = NIL;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	private int hash(int p)
+	{
+		int key = (window[p] << 16) ^ (window[ mod_window(p + 1) ] << 8) ^ window[ mod_window(p + 2) ];
+		return (key * 0x9E3779B1) >>> (32 - HASH_BITS);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public void addString(int new_node)
+	{
+		int h = hash(new_node);
+
+		longestMatch(head[h], new_node, new_node);
+
+		prev[new_node] = head[h];
+		head[h] = new_node;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		Only link the position at the head of its chain (as deflate's insert_string), the chain is not followed.
+	*/
+	public void insertString(int new_node)
+	{
+		int h = hash(new_node);
+
+		match_length = 0;
+		match_distance = 0;
+		candidates = 0;
+
+		prev[new_node] = head[h];
+		head[h] = new_node;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public void searchString(int new_node, int current_distance)
+	{
+		longestMatch(head[hash(new_node)], new_node, current_distance);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		The positions are never unlinked : a chain is followed while the distances increase,
+		a position overwritten since its insertion is newer than its predecessor and ends the chain.
+	*/
+	public void deleteString(int p)
+	{
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	private void longestMatch(int test_node, int new_node, int current_distance)
+	{
+		int max_distance = window_size - look_ahead_size;
+		int last_distance = 0;
+		int chain = max_chain;
+
+		match_length = 0;
+		match_distance = 0;
+		candidates = 0;
+
+		while ((test_node != NIL) && (chain-- > 0)) {
+			int distance = mod_window(new_node - test_node);
+			if ((distance <= last_distance) || (distance > max_distance)) return;
+			last_distance = distance;
+
+			// a longer string matching must match the byte following the current one
+			if (window[ mod_window(test_node + match_length) ] == window[ mod_window(new_node + match_length) ]) {
+				int i = 0;
+				while ((i < max_length) && (window[ mod_window(new_node + i) ] == window[ mod_window(test_node + i) ])) i++;
+
+				distance = mod_window(current_distance - test_node);
+
+				if (better(i, distance, false)) {
+					match_length = i;
+					match_distance = distance;
+					if (collect) candidate(i, distance);
+					if ((match_length >= max_length) || (match_length >= nice_length)) return;
+				}
+			}
+
+			test_node = prev[test_node];
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import binary.*;
+
+/**
+	<p>The Header is written at the beginning of a compressed file : a magic number, the version of the format and the flags.</p>
+
+	<p>A file compressed by a previous release of LZCompress has no header,
+	it is made of a single block of compressed data.</p>
+*/
+public class Header {
+
+	// 0xF0 0x7F 'L' 'Z' as read by peekBits(32) (the first byte is the lowest one)
+	static final int MAGIC = 0x5A4C7FF0;
+
+	public static final int LEGACY = 0;
+	public static final int VERSION = 2;
+
+	// the data is a series of independent frames
+	public static final int FRAMES = 0x01;
+
+	// the data is stored without compression : its size on 32 bits, then the bytes
+	public static final int STORED = 0x02;
+
+	// the blocks may refer to the words of a dictionnary (symbol 280), its identifier follows the flags
+	public static final int WORDS = 0x04;
+
+	// the back window is primed with a preset dictionnary, its identifier follows
+	public static final int PRESET = 0x08;
+
+	// the window is larger than 64K, its number of bits (17 to 26) follows
+	public static final int WINDOW = 0x10;
+
+	// the look ahead is 4096 bytes, a string matching longer than 258 bytes is coded by the symbol 281 (see MatchCodes)
+	public static final int LONG = 0x20;
+
+	// the size of a version 2 header (without the dictionnary identifiers)
+	public static final int SIZE = 6;
+
+	public int version = VERSION;
+
+	// the flags are written from the version 2
+	public int flags = 0;
+
+	// the identifier of the dictionnary (see Dico.id), with the WORDS flag only
+	public int dictionary = 0;
+
+	// the identifier of the preset dictionnary (an Adler32 of its bytes), with the PRESET flag only
+	public int preset = 0;
+
+	// the number of bits of the window size, with the WINDOW flag only (16 otherwise)
+	public int window_bits = MatchCodes.MIN_WINDOW_BITS;
+
+	public Header ()
+	{
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Write the header into the output stream (on a byte boundary).</p>
+	*/
+	public void write(BinaryOutputStream bos) throws IOException
+	{
+		bos.writeBit(MAGIC, 32);
+		bos.writeBit(version, 8);
+		if (version >= 2) bos.writeBit(flags, 8);
+		if ((flags & WORDS) != 0) bos.writeBit(dictionary, 32);
+		if ((flags & PRESET) != 0) bos.writeBit(preset, 32);
+		if ((flags & WINDOW) != 0) bos.writeBit(window_bits, 8);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Read the header from the input stream.</p>
+		<p>Returns false (and the version is LEGACY) when the input stream has no header,
+		nothing is consumed in this case.</p>
+	*/
+	public boolean read(BinaryInputStream bis) throws IOException
+	{
+		if (bis.peekBits(32) != MAGIC) {
+			version = LEGACY;
+			return false;
+		}
+
+		bis.skipBits(32);
+		version = bis.readBits(8);
+		if ((version < 1) || (version > VERSION)) throw new IOException("unsupported version " + version);
+
+		flags = (version >= 2) ? bis.readBits(8) : 0;
+		dictionary = ((flags & WORDS) != 0) ? bis.readBits(32) : 0;
+		preset = ((flags & PRESET) != 0) ? bis.readBits(32) : 0;
+
+		window_bits = ((flags & WINDOW) != 0) ? bis.readBits(8) : MatchCodes.MIN_WINDOW_BITS;
+		if ((window_bits < MatchCodes.MIN_WINDOW_BITS) || (window_bits > MatchCodes.MAX_WINDOW_BITS)) throw new IOException("unsupported window of " + window_bits + " bits");
+
+		return true;
+	}
+}
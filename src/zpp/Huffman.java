@@ -0,0 +1,160 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>Huffman compute the code length of each symbol from the frequences of the symbols.</p>
+
+	<p>The Huffman tree is built with a heap of the node numbers (the symbols are the leaves 0 to n-1,
+	the internal nodes are numbered from n), so no object is allocated and a table is built in O(n log n).</p>
+
+	<p>The code lengths are limited to <code>max_bits</code> : when the tree is too deep, the longest codes
+	are set to <code>max_bits</code> and shorter codes are moved down the tree until the code is complete again
+	(the same heuristic as zlib). The least frequent symbols get the longest codes.</p>
+*/
+public class Huffman {
+
+	public static final int MAX_BITS = 15;
+
+	int[] heap;
+	int[] weight;
+	int[] depth;
+	int[] parent;
+	int[] order;
+	int[] bl_count;
+
+	int heap_len;
+
+	public Huffman ()
+	{
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Compute the code length of the symbols 0 to n-1 into <code>nbBits</code> (0 for an unused symbol).</p>
+		<p>A symbol used alone get a code of one bit.</p>
+	*/
+	public void buildLengths(int[] freq, int n, int max_bits, int[] nbBits)
+	{
+		if (n > (1 << max_bits)) throw new IllegalArgumentException(n + " symbols on " + max_bits + " bits");
+
+		if ((heap == null) || (heap.length < 2*n)) {
+			heap = new int[2*n];
+			weight = new int[2*n];
+			depth = new int[2*n];
+			parent = new int[2*n];
+			order = new int[n];
+		}
+		if ((bl_count == null) || (bl_count.length < max_bits+1)) bl_count = new int[max_bits+1];
+
+		heap_len = 0;
+		for (int i=0; i<n; i++) {
+			nbBits[i] = 0;
+			weight[i] = freq[i];
+			depth[i] = 0;
+			if (freq[i] > 0) heap[heap_len++] = i;
+		}
+
+		if (heap_len == 0) return;
+
+		if (heap_len == 1) {
+			nbBits[heap[0]] = 1;
+			return;
+		}
+
+		for (int k = heap_len/2 - 1; k >= 0; k--) siftDown(k);
+
+		// merge the two lightest nodes until a single node is left, the leaves are taken by increasing frequences
+		int leaves = 0;
+		int node = n;
+
+		while (heap_len > 1) {
+			int a = heap[0];
+			heap[0] = heap[--heap_len];
+			siftDown(0);
+
+			int b = heap[0];
+
+			if (a < n) order[leaves++] = a;
+			if (b < n) order[leaves++] = b;
+
+			weight[node] = weight[a] + weight[b];
+			depth[node] = Math.max(depth[a], depth[b]) + 1;
+			parent[a] = node;
+			parent[b] = node;
+
+			heap[0] = node;
+			siftDown(0);
+			node ++;
+		}
+
+		// the root is the last node, each node has a greater number than its children
+		int root = node - 1;
+		depth[root] = 0;
+		for (int i = root - 1; i >= 0; i--) {
+			if ((i >= n) || (freq[i] > 0)) depth[i] = depth[ parent[i] ] + 1;
+		}
+
+		for (int bits = 0; bits <= max_bits; bits++) bl_count[bits] = 0;
+
+		// the deepest leaves are set to max_bits
+		int kraft = 0;
+		for (int k=0; k<leaves; k++) {
+			int bits = Math.min(depth[ order[k] ], max_bits);
+			bl_count[bits]++;
+			kraft += 1 << (max_bits - bits);
+		}
+
+		// while the code is oversubscribed, move a leaf down the tree with a max_bits leaf as its brother
+		while (kraft > (1 << max_bits)) {
+			int bits = max_bits - 1;
+			while (bl_count[bits] == 0) bits--;
+
+			bl_count[bits]--;
+			bl_count[bits+1] += 2;
+			bl_count[max_bits]--;
+			kraft --;
+		}
+
+		// the least frequent symbols get the longest codes
+		int k = 0;
+		for (int bits = max_bits; bits > 0; bits--) {
+			for (int c = bl_count[bits]; c > 0; c--) {
+				nbBits[ order[k++] ] = bits;
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>The lighter node first, or the less deep one for a same frequence (to keep the tree balanced).</p>
+	*/
+	private boolean smaller(int a, int b)
+	{
+		return (weight[a] < weight[b]) || ((weight[a] == weight[b]) && (depth[a] <= depth[b]));
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	private void siftDown(int k)
+	{
+		int v = heap[k];
+		int j = 2*k + 1;
+
+		while (j < heap_len) {
+			if ((j + 1 < heap_len) && smaller(heap[j+1], heap[j])) j++;
+			if (smaller(v, heap[j])) break;
+
+			heap[k] = heap[j];
+			k = j;
+			j = 2*k + 1;
+		}
+
+		heap[k] = v;
+	}
+}
@@ -0,0 +1,130 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import binary.*;
+
+/**
+	<p>A HuffmanDecoder resolve a canonical Huffman code with table lookups
+	instead of walking a BinaryTree one bit at a time.</p>
+
+	<p>The codes are rebuilt from the code lengths stored in the compressed header
+	(the shortest codes first, and for a same length, by increasing symbol value).
+	The primary table is indexed by the next <code>root_bits</code> bits of the input stream,
+	a longer code is resolved through a secondary table linked from the primary one.</p>
+*/
+public class HuffmanDecoder {
+
+	// an entry is (symbol << 5) | nbBits, or LINK | (offset << 5) | nbBits for a secondary table
+	static final int LINK = 0x40000000;
+
+	public int root_bits = 0;
+	public int max_bits = 0;
+
+	int[] table;
+
+	/**
+		Build the lookup tables from the code length of each symbol (0 when the symbol is unused).
+	*/
+	public HuffmanDecoder(int[] nbBits, int n, int _root_bits) throws IOException
+	{
+		for (int i=0; i<n; i++) {
+			if (nbBits[i] > max_bits) max_bits = nbBits[i];
+		}
+
+		int[] count = new int[max_bits + 1];
+		int[] next_code = new int[max_bits + 1];
+		for (int i=0; i<n; i++) count[nbBits[i]]++;
+
+		int code = 0;
+		count[0] = 0;
+		for (int bits = 1; bits <= max_bits; bits++) {
+			code = (code + count[bits-1]) << 1;
+			next_code[bits] = code;
+			if (next_code[bits] + count[bits] > (1 << bits)) throw new IOException("invalid huffman code");
+		}
+
+		root_bits = Math.max(1, Math.min(_root_bits, max_bits));
+
+		int[] codes = new int[n];
+		int[] sub_bits = new int[1 << root_bits];
+
+		for (int i=0; i<n; i++) {
+			int len = nbBits[i];
+			if (len != 0) {
+				codes[i] = next_code[len]++;
+				if (len > root_bits) {
+					int prefix = reverse(codes[i] >>> (len - root_bits), root_bits);
+					if (len - root_bits > sub_bits[prefix]) sub_bits[prefix] = len - root_bits;
+				}
+			}
+		}
+
+		// the secondary tables are stored after the primary table
+		int size = (1 << root_bits);
+		for (int i=0; i < (1 << root_bits); i++) {
+			if (sub_bits[i] > 0) size += (1 << sub_bits[i]);
+		}
+		table = new int[size];
+
+		int offset = (1 << root_bits);
+		for (int i=0; i < (1 << root_bits); i++) {
+			if (sub_bits[i] > 0) {
+				table[i] = LINK | (offset << 5) | sub_bits[i];
+				offset += (1 << sub_bits[i]);
+			}
+		}
+
+		for (int i=0; i<n; i++) {
+			int len = nbBits[i];
+			if (len == 0) continue;
+
+			if (len <= root_bits) {
+				int entry = (i << 5) | len;
+				for (int j = reverse(codes[i], len); j < (1 << root_bits); j += (1 << len)) {
+					table[j] = entry;
+				}
+			}
+			else {
+				int link = table[reverse(codes[i] >>> (len - root_bits), root_bits)];
+				int base = (link & ~LINK) >>> 5;
+				int bits = len - root_bits;
+				int entry = (i << 5) | bits;
+				for (int j = reverse(codes[i], bits); j < (1 << (link & 0x1F)); j += (1 << bits)) {
+					table[base + j] = entry;
+				}
+			}
+		}
+	}
+
+	/**
+		Read the next symbol from the input stream.
+	*/
+	public int decode(BinaryInputStream bis) throws IOException
+	{
+		int entry = table[bis.peekBits(root_bits)];
+
+		if ((entry & LINK) != 0) {
+			bis.skipBits(root_bits);
+			entry = table[((entry & ~LINK) >>> 5) + bis.peekBits(entry & 0x1F)];
+		}
+
+		int len = entry & 0x1F;
+		if (len == 0) throw new IOException("invalid huffman code");
+
+		bis.skipBits(len);
+		return (entry >>> 5);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	static int reverse(int value, int size) {
+		return Integer.reverse(value) >>> (32 - size);
+	}
+}
@@ -0,0 +1,85 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>A HuffmanEncoder hold the frequence of each symbol of a block, and the canonical Huffman codes built from them.</p>
+
+	<p>The codes are stored into flat tables indexed by the symbol : <code>code[]</code> is already reversed
+	(the BinaryOutputStream write the lowest bit first), so a symbol is written with
+	<code>bos.writeBit(code[symbol], length[symbol])</code>.</p>
+*/
+public class HuffmanEncoder {
+
+	public int n;
+
+	public int[] freq;
+	public int[] code;
+	public byte[] length;
+
+	int[] nbBits;
+	int[] count = new int[Huffman.MAX_BITS + 1];
+	int[] next_code = new int[Huffman.MAX_BITS + 1];
+
+	public HuffmanEncoder (int _n)
+	{
+		n = _n;
+		freq = new int[n];
+		code = new int[n];
+		length = new byte[n];
+		nbBits = new int[n];
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Build the codes from the frequences, no code is longer than <code>max_bits</code> (15 max).</p>
+		<p>The codes are assigned by increasing length, and for a same length by increasing symbol value.</p>
+	*/
+	public void build(Huffman huffman, int max_bits)
+	{
+		huffman.buildLengths(freq, n, max_bits, nbBits);
+
+		for (int bits = 0; bits <= max_bits; bits++) count[bits] = 0;
+		for (int i=0; i<n; i++) count[ nbBits[i] ]++;
+
+		int c = 0;
+		count[0] = 0;
+		for (int bits = 1; bits <= max_bits; bits++) {
+			c = (c + count[bits-1]) << 1;
+			next_code[bits] = c;
+		}
+
+		for (int i=0; i<n; i++) {
+			int len = nbBits[i];
+			length[i] = (byte) len;
+			code[i] = (len == 0 ? 0 : reverse(next_code[len]++, len));
+		}
+	}
+
+	/**
+		<p>Returns the code length of each symbol (0 for an unused symbol).</p>
+	*/
+	public int[] lengths()
+	{
+		return nbBits.clone();
+	}
+
+	/**
+		<p>Clear the frequences for the next block.</p>
+	*/
+	public void clear()
+	{
+		java.util.Arrays.fill(freq, 0);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	static int reverse(int value, int size) {
+		return Integer.reverse(value) >>> (32 - size);
+	}
+}
@@ -0,0 +1,101 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>A compression Level bundle the parameters of the string matching :</p>
+	<li>the match finder (a hash chain, the binary tree for the optimal parsing),</li>
+	<li>the maximum number of positions visited on a hash chain,</li>
+	<li>the lazy matching policy (how many next positions are tried before a string matching is kept),</li>
+	<li>the "nice length" which ends the search as soon as a string matching is long enough.</li>
+
+	<p>Level 1 is the fastest, the next levels follow longer chains up to level 9 (one step lazy matching),
+	and the ULTRA level try two next positions before keeping a string matching.
+	The full tree search only sees the string matchings on its path, it compressed less than the long chains
+	(the TreeMatchFinder is still used by the optimal parsing, or when given to LZCompress).
+	The OPTIMAL level choose the cheapest codes of each segment of the input (see OptimalParser),
+	a string matching of nice_length bytes is generated at once.</p>
+*/
+public class Level {
+
+	public static final int FASTEST = 1;
+	public static final int BEST = 9;
+	public static final int ULTRA = 10;
+	public static final int OPTIMAL = 11;
+	public static final int DEFAULT = BEST;
+
+	public final int level;
+	public final int finder;
+	public final int max_chain;
+
+	// 0 : greedy parsing, 1 : try the next position, 2 : try the two next positions
+	public final int lazy_depth;
+
+	// no lazy matching once a string matching of max_lazy bytes is found
+	public final int max_lazy;
+
+	public final int nice_length;
+
+	// the codes are chosen by an OptimalParser (no lazy matching)
+	public final boolean optimal;
+
+	static Level[] levels = {
+		null,
+		new Level(1,  MatchFinder.HASH_CHAIN, 4,    0, 0,                 16),
+		new Level(2,  MatchFinder.HASH_CHAIN, 8,    0, 0,                 32),
+		new Level(3,  MatchFinder.HASH_CHAIN, 16,   0, 0,                 64),
+		new Level(4,  MatchFinder.HASH_CHAIN, 16,   1, 16,                64),
+		new Level(5,  MatchFinder.HASH_CHAIN, 32,   1, 32,                128),
+		new Level(6,  MatchFinder.HASH_CHAIN, 128,  1, 128,               256),
+		new Level(7,  MatchFinder.HASH_CHAIN, 1024, 1, 128,               258),
+		new Level(8,  MatchFinder.HASH_CHAIN, 2048, 1, 258,               258),
+		new Level(9,  MatchFinder.HASH_CHAIN, 4096, 1, Integer.MAX_VALUE, Integer.MAX_VALUE),
+		new Level(10, MatchFinder.HASH_CHAIN, 4096, 2, Integer.MAX_VALUE, Integer.MAX_VALUE),
+		new Level(11, MatchFinder.TREE,       0,    0, 0,                 128,              true)
+	};
+
+	public Level (int _level, int _finder, int _max_chain, int _lazy_depth, int _max_lazy, int _nice_length)
+	{
+		this(_level, _finder, _max_chain, _lazy_depth, _max_lazy, _nice_length, false);
+	}
+
+	public Level (int _level, int _finder, int _max_chain, int _lazy_depth, int _max_lazy, int _nice_length, boolean _optimal)
+	{
+		level = _level;
+		finder = _finder;
+		max_chain = _max_chain;
+		lazy_depth = _lazy_depth;
+		max_lazy = _max_lazy;
+		nice_length = _nice_length;
+		optimal = _optimal;
+	}
+
+	/**
+		Returns the parameters of a compression level (from FASTEST to OPTIMAL),
+		shared by all the compressors (the parameters are final).
+	*/
+	public static Level get(int level)
+	{
+		if ((level < FASTEST) || (level > OPTIMAL)) throw new IllegalArgumentException("compression level " + level);
+		return levels[level];
+	}
+
+	/**
+		Returns a new match finder for this level.
+	*/
+	public MatchFinder createFinder()
+	{
+		if (finder == MatchFinder.HASH_CHAIN) {
+			HashChainMatchFinder f = new HashChainMatchFinder(max_chain);
+			f.nice_length = nice_length;
+			return f;
+		}
+		else return new TreeMatchFinder();
+	}
+}
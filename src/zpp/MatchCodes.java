@@ -0,0 +1,163 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>MatchCodes define how the length and the distance of a string matching are coded,
+	for both LZCompress and LZExpand.</p>
+
+	<p>A length is coded by a symbol from 258 to 279 followed by extra bits (LENGTH_BASE is the first length of the symbol).
+	A string matching of 3 bytes is coded by the symbol 257, followed by the distance minus one on 12 bits.
+	A word of the dictionnary is coded by the symbol 280, followed by the Huffman code of the word in the Dico.</p>
+	<p>With a long look ahead (see Header.LONG), a length of more than MAX_LENGTH bytes is coded by the symbol 281,
+	followed by the number of bits <code>n</code> of the length minus LONG_LENGTH on 4 bits, then by these <code>n</code> bits.</p>
+
+	<p>A distance is coded by a symbol from 0 to 31 followed by extra bits (DISTANCE_BASE is the first distance of the symbol).
+	The symbol of a distance is found in a table of the 4096 near distances, or for a far distance,
+	in a table indexed by (distance - 1) >> 11.</p>
+	<p>A window larger than 64K (from 2^17 to 2^26 bytes) adds two symbols by bit of the window (the symbols 32 to 51),
+	each one covering half of the distances from 2^k + 1 to 2^(k+1).</p>
+*/
+public class MatchCodes {
+
+	public static final int BREAK_EVEN_SYMBOL = 257;
+	public static final int BREAK_EVEN_DISTANCE_BITS = 12;
+
+	public static final int WORD_SYMBOL = 280;
+
+	public static final int MAX_LENGTH = 258;
+
+	// the longer lengths of a long look ahead (4096 bytes, up to 32 KB may be coded)
+	public static final int LONG_SYMBOL = 281;
+	public static final int LONG_LENGTH = MAX_LENGTH + 1;
+	public static final int LONG_LOOK_AHEAD = 4096;
+
+	// the number of bits of the window size (16 for the window of 64K of the previous releases)
+	public static final int MIN_WINDOW_BITS = 16;
+	public static final int MAX_WINDOW_BITS = 26;
+
+	// indexed by the length symbol (257 to 279, and 281 for its first length)
+	public static final int[] LENGTH_BASE = new int[282];
+	public static final int[] LENGTH_EXTRA = new int[282];
+
+	// indexed by the distance symbol (0 to 31 for a window of 64K, 51 for a window of 2^26 bytes)
+	public static final int[] DISTANCE_BASE = {
+		1, 9, 17, 25, 33, 49, 65, 97, 129, 193,
+		257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145,
+		8193, 12289, 16385, 20481, 24577, 28673, 32769, 36865, 40961, 45057,
+		49153, 57345,
+		65537, 98305, 131073, 196609, 262145, 393217, 524289, 786433, 1048577, 1572865,
+		2097153, 3145729, 4194305, 6291457, 8388609, 12582913, 16777217, 25165825, 33554433, 50331649
+	};
+
+	public static final int[] DISTANCE_EXTRA = {
+		3, 3, 3, 3, 4, 4, 5, 5, 6, 6,
+		7, 7, 8, 8, 9, 9, 10, 10, 11, 11,
+		12, 12, 12, 12, 12, 12, 12, 12, 12, 12,
+		13, 13,
+		15, 15, 16, 16, 17, 17, 18, 18, 19, 19,
+		20, 20, 21, 21, 22, 22, 23, 23, 24, 24
+	};
+
+	// the symbol of each length (3 to MAX_LENGTH)
+	static final short[] LENGTH_SYMBOL = new short[MAX_LENGTH + 1];
+
+	static final int NEAR_DISTANCE = 4096;
+	static final int FAR_SHIFT = 11;
+
+	static final byte[] NEAR_DISTANCE_SYMBOL = new byte[NEAR_DISTANCE];
+	static final byte[] FAR_DISTANCE_SYMBOL = new byte[(1 << 16) >> FAR_SHIFT];
+
+	static {
+		int[] base = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 99, 131 };
+		int[] extra = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 5, 5, 7 };
+
+		for (int i=0; i<base.length; i++) {
+			int symbol = BREAK_EVEN_SYMBOL + i;
+			LENGTH_BASE[symbol] = base[i];
+			LENGTH_EXTRA[symbol] = extra[i];
+
+			for (int length = base[i]; (length < base[i] + (1 << extra[i])) && (length <= MAX_LENGTH); length++) {
+				LENGTH_SYMBOL[length] = (short) symbol;
+			}
+		}
+
+		LENGTH_BASE[LONG_SYMBOL] = LONG_LENGTH;
+
+		for (int symbol = 0; symbol < distanceSymbols(MIN_WINDOW_BITS); symbol++) {
+			for (int distance = DISTANCE_BASE[symbol]; distance < DISTANCE_BASE[symbol] + (1 << DISTANCE_EXTRA[symbol]); distance++) {
+				if (distance <= NEAR_DISTANCE) NEAR_DISTANCE_SYMBOL[distance - 1] = (byte) symbol;
+				else FAR_DISTANCE_SYMBOL[(distance - 1) >> FAR_SHIFT] = (byte) symbol;
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Returns the symbol of a length (from 4 to MAX_LENGTH, or LONG_SYMBOL for a longer one).</p>
+	*/
+	public static int lengthSymbol(int length)
+	{
+		if (length > MAX_LENGTH) return LONG_SYMBOL;
+		return LENGTH_SYMBOL[length];
+	}
+
+	/**
+		<p>Returns the extra bits following the symbol of a length (from 4 bytes),
+		for a long length : the number of bits <code>n</code> of the length minus LONG_LENGTH, then these <code>n</code> bits.</p>
+	*/
+	public static int lengthExtra(int length)
+	{
+		if (length <= MAX_LENGTH) return length - LENGTH_BASE[ LENGTH_SYMBOL[length] ];
+
+		int value = length - LONG_LENGTH;
+		return (value << 4) | (32 - Integer.numberOfLeadingZeros(value));
+	}
+
+	/**
+		<p>Returns the number of extra bits following the symbol of a length (from 4 bytes).</p>
+	*/
+	public static int lengthExtraBits(int length)
+	{
+		if (length <= MAX_LENGTH) return LENGTH_EXTRA[ LENGTH_SYMBOL[length] ];
+
+		return 4 + (32 - Integer.numberOfLeadingZeros(length - LONG_LENGTH));
+	}
+
+	/**
+		<p>Returns the symbol of a distance (from 1 to 2^26).</p>
+	*/
+	public static int distanceSymbol(int distance)
+	{
+		if (distance <= NEAR_DISTANCE) return NEAR_DISTANCE_SYMBOL[distance - 1];
+		if (distance <= (1 << MIN_WINDOW_BITS)) return FAR_DISTANCE_SYMBOL[(distance - 1) >> FAR_SHIFT];
+
+		// distance - 1 is from 2^k to 2^(k+1) - 1, its bit k-1 gives the half
+		int k = 31 - Integer.numberOfLeadingZeros(distance - 1);
+		return 32 + 2 * (k - MIN_WINDOW_BITS) + (((distance - 1) >>> (k - 1)) & 1);
+	}
+
+	/**
+		<p>Returns the number of distance symbols of a window of 2^<code>window_bits</code> bytes.</p>
+	*/
+	public static int distanceSymbols(int window_bits)
+	{
+		return 32 + 2 * (window_bits - MIN_WINDOW_BITS);
+	}
+
+	/**
+		<p>Returns the number of bits of the smallest window (64K at least) holding <code>size</code> positions.</p>
+	*/
+	public static int windowBits(long size)
+	{
+		int bits = MIN_WINDOW_BITS;
+		while ((bits < MAX_WINDOW_BITS) && ((1L << bits) < size)) bits++;
+		return bits;
+	}
+}
@@ -0,0 +1,157 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>A MatchFinder index the strings of the back window and search for the longest string matching.</p>
+
+	<p>The window is shared with the compressor, a string is identified by its position in the window.
+	The compressor adds each position of the window once (when it becomes the current position),
+	and deletes it before the position is overwritten by a new input byte.</p>
+
+	<p>After addString or searchString, match_length and match_distance hold the best string matching found
+	(match_length is 0 when no string of BREAK_EVEN bytes or more is found).
+	When <code>collect</code> is set, the string matchings of increasing length met by the search are kept too (for an OptimalParser).</p>
+*/
+public abstract class MatchFinder {
+
+	public static final int TREE = 0;
+	public static final int HASH_CHAIN = 1;
+
+	public static int BREAK_EVEN = 3;
+
+	// a string matching of BREAK_EVEN bytes is only accepted in the last NEAR_DISTANCE bytes
+	public static int NEAR_DISTANCE = 4096;
+
+	// in a window larger than 64K, a string matching farther than FAR_DISTANCE must be FAR_LENGTH bytes long at least,
+	// and is compared to another one by its estimated cost by byte, to pay for the extra bits of its distance (15 to 24 bits)
+	public static int FAR_DISTANCE = (1 << 16);
+	public static int FAR_LENGTH = 16;
+
+	public int match_length = 0;
+	public int match_distance = 0;
+
+	// the string matchings of increasing length met by the last search (the longest ones), when collect is set
+	public static int MAX_CANDIDATES = 32;
+
+	public boolean collect = false;
+	public int candidates = 0;
+	public int[] candidate_length = new int[MAX_CANDIDATES];
+	public int[] candidate_distance = new int[MAX_CANDIDATES];
+
+	protected int[] window;
+	protected int window_size;
+	protected int look_ahead_size;
+
+	// the bytes left in the look ahead of the current position (look_ahead_size, but at the end of the input) :
+	// a string is compared on max_length bytes at most, the bytes after them are not written yet
+	public int max_length;
+
+	/**
+		Attach the finder to the window of the compressor and clear the index.
+	*/
+	public void init(int[] _window, int _look_ahead_size)
+	{
+		window = _window;
+		window_size = _window.length;
+		look_ahead_size = _look_ahead_size;
+		max_length = _look_ahead_size;
+		reset();
+	}
+
+	/**
+		Clear the index of the back window.
+	*/
+	public abstract void reset();
+
+	/**
+		Clear the index of the back window, when only the positions below <code>used</code> have been written
+		since the previous reset (the window must still hold their bytes).
+	*/
+	public void reset(int used)
+	{
+		reset();
+	}
+
+	/**
+		Search for a string matching at position new_node and insert the string into the index.
+	*/
+	public abstract void addString(int new_node);
+
+	/**
+		Insert the string at position new_node into the index, when its string matching is not needed
+		(a position inside a string matching already generated). By default, the string matching is searched too.
+	*/
+	public void insertString(int new_node)
+	{
+		addString(new_node);
+	}
+
+	/**
+		Search for a string matching at position new_node without inserting it (for lazy matching),
+		the distance is measured from current_distance.
+	*/
+	public abstract void searchString(int new_node, int current_distance);
+
+	/**
+		Remove the string at position p from the index.
+	*/
+	public abstract void deleteString(int p);
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		Returns true when a string matching of <code>length</code> bytes at <code>distance</code> is better than the current one :
+		longer (or as long and nearer, when <code>ties</code> is set : the tree does not visit the positions from the nearest one),
+		or with a lower estimated cost by byte when one of them is far.
+	*/
+	protected boolean better(int length, int distance, boolean ties)
+	{
+		if (length < BREAK_EVEN) return false;
+
+		// if the length is BREAK_EVEN only near string matching are accepted (in the last 4096 bytes).
+		if ((length == BREAK_EVEN) && (distance > NEAR_DISTANCE)) return false;
+
+		if ((distance <= FAR_DISTANCE) && (match_distance <= FAR_DISTANCE)) {
+			return (length > match_length) || (ties && (length == match_length) && (distance < match_distance));
+		}
+
+		if ((distance > FAR_DISTANCE) && (length < FAR_LENGTH)) return false;
+		if (match_length == 0) return true;
+
+		return (long) distanceBits(distance) * match_length < (long) distanceBits(match_distance) * length;
+	}
+
+	/**
+		Keep a string matching accepted by the search : it replaces the previous one when it is not longer.
+	*/
+	protected void candidate(int length, int distance)
+	{
+		while ((candidates > 0) && (candidate_length[candidates - 1] >= length)) candidates--;
+		if (candidates == MAX_CANDIDATES) candidates--;
+
+		candidate_length[candidates] = length;
+		candidate_distance[candidates] = distance;
+		candidates++;
+	}
+
+	/**
+		Returns the estimated number of bits of a string matching at a distance (the length and distance codes and the extra bits).
+	*/
+	static int distanceBits(int distance)
+	{
+		// (a lazy search measures the distance from the previous position, it may be 0)
+		return 12 + MatchCodes.DISTANCE_EXTRA[ MatchCodes.distanceSymbol(Math.max(distance, 1)) ];
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	protected int mod_window(int a)
+	{
+		return (a & (window_size - 1));
+	}
+}
@@ -0,0 +1,260 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>An OptimalParser choose the codes of a segment of the input (SEGMENT_SIZE positions at most)
+	with the lowest cost in bits, instead of the longest string matching at each position.</p>
+
+	<p>The compressor adds each position of the segment with its candidates : the string matchings of increasing length
+	met by the match finder (a candidate of <code>n</code> bytes may be used for any length from BREAK_EVEN to <code>n</code>)
+	and the words of the dictionnary starting at this position.</p>
+
+	<p>The cheapest path from the first position to the end of the segment is then found by dynamic programming
+	(each position is reached from a previous one by a literal, a string matching or a word).
+	A code is priced by the Huffman code lengths of the frequences of the current block, so the path is searched twice :
+	the second search is priced with the frequences of the block completed by the codes of the first path.</p>
+*/
+public class OptimalParser {
+
+	public static int SEGMENT_SIZE = 16384;
+
+	// the candidates kept by position (the longest ones)
+	public static int MAX_CANDIDATES = 32;
+
+	// the price of a symbol never used in the block is estimated from a frequence of one
+	static int UNSEEN = 1;
+
+	// the literal of each position (its symbol), and its first candidate
+	int[] literal = new int[SEGMENT_SIZE];
+	int[] first = new int[SEGMENT_SIZE + 1];
+
+	// the length of each candidate, and its distance (or -1 - number of the word for a word of the dictionnary)
+	int[] candidate_length = new int[SEGMENT_SIZE * MAX_CANDIDATES];
+	int[] candidate_distance = new int[SEGMENT_SIZE * MAX_CANDIDATES];
+
+	int size = 0;
+	int nb_candidates = 0;
+
+	Dico dico;
+
+	// the cheapest cost (in bits) of each position, and the code reaching it from a previous position
+	int[] cost = new int[SEGMENT_SIZE + 1];
+	int[] from_length = new int[SEGMENT_SIZE + 1];
+	int[] from_distance = new int[SEGMENT_SIZE + 1];
+
+	// the codes of the cheapest path, in the order of the input
+	public int steps = 0;
+	public int[] step_length = new int[SEGMENT_SIZE];
+	public int[] step_distance = new int[SEGMENT_SIZE];
+
+	// the frequences of the block, and the prices of the symbols
+	HuffmanEncoder encoder_len;
+	HuffmanEncoder encoder_dis;
+	Huffman huffman = new Huffman();
+
+	public OptimalParser ()
+	{
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>The dictionnary of the words added as candidates (null for no word).</p>
+	*/
+	public void setDico(Dico _dico)
+	{
+		dico = _dico;
+	}
+
+	/**
+		<p>Clear the segment.</p>
+	*/
+	public void clear()
+	{
+		size = 0;
+		nb_candidates = 0;
+		steps = 0;
+	}
+
+	/**
+		<p>Returns the number of positions of the segment.</p>
+	*/
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isFull()
+	{
+		return (size == SEGMENT_SIZE);
+	}
+
+	/**
+		<p>Returns the literal of a position of the segment.</p>
+	*/
+	public int literal(int position)
+	{
+		return literal[position];
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Add a position to the segment : its literal, and the string matchings collected by the match finder
+		(cut to <code>max_length</code> bytes, the bytes left in the look ahead).</p>
+	*/
+	public void add(int symbol, MatchFinder finder, int max_length)
+	{
+		first[size] = nb_candidates;
+		literal[size] = symbol;
+		size++;
+
+		for (int i=0; i<finder.candidates; i++) {
+			addCandidate(Math.min(finder.candidate_length[i], max_length), finder.candidate_distance[i]);
+		}
+	}
+
+	/**
+		<p>Add a word of the dictionnary starting at the last position added.</p>
+	*/
+	public void addWord(int word, int length)
+	{
+		addCandidate(length, -1 - word);
+	}
+
+	private void addCandidate(int length, int distance)
+	{
+		if (length < MatchFinder.BREAK_EVEN) return;
+
+		// the longest candidates are kept
+		if (nb_candidates - first[size - 1] == MAX_CANDIDATES) nb_candidates--;
+
+		candidate_length[nb_candidates] = length;
+		candidate_distance[nb_candidates] = distance;
+		nb_candidates++;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Search for the cheapest codes of the segment (into step_length and step_distance, a length of 1 for a literal),
+		priced with the frequences of the current block.</p>
+	*/
+	public void parse(HuffmanEncoder block_len, HuffmanEncoder block_dis)
+	{
+		first[size] = nb_candidates;
+
+		if ((encoder_len == null) || (encoder_len.n != block_len.n)) encoder_len = new HuffmanEncoder(block_len.n);
+		if ((encoder_dis == null) || (encoder_dis.n != block_dis.n)) encoder_dis = new HuffmanEncoder(block_dis.n);
+
+		System.arraycopy(block_len.freq, 0, encoder_len.freq, 0, block_len.n);
+		System.arraycopy(block_dis.freq, 0, encoder_dis.freq, 0, block_dis.n);
+		search();
+
+		// the prices are refined with the codes of the first path
+		System.arraycopy(block_len.freq, 0, encoder_len.freq, 0, block_len.n);
+		System.arraycopy(block_dis.freq, 0, encoder_dis.freq, 0, block_dis.n);
+		int p = 0;
+		for (int k=0; k<steps; k++) {
+			count(p, step_length[k], step_distance[k]);
+			p += step_length[k];
+		}
+		search();
+	}
+
+	/**
+		<p>Add the symbols of the code of a position to the frequences.</p>
+	*/
+	private void count(int p, int length, int distance)
+	{
+		if (length == 1) encoder_len.freq[ literal[p] ] ++;
+		else if (distance < 0) encoder_len.freq[MatchCodes.WORD_SYMBOL] ++;
+		else if (length == MatchFinder.BREAK_EVEN) encoder_len.freq[MatchCodes.BREAK_EVEN_SYMBOL] ++;
+		else {
+			encoder_len.freq[ MatchCodes.lengthSymbol(length) ] ++;
+			encoder_dis.freq[ MatchCodes.distanceSymbol(distance) ] ++;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Search for the cheapest path with the prices of the current frequences.</p>
+	*/
+	private void search()
+	{
+		int[] price_len = prices(encoder_len);
+		int[] price_dis = prices(encoder_dis);
+
+		cost[0] = 0;
+		for (int p=1; p<=size; p++) cost[p] = Integer.MAX_VALUE;
+
+		for (int p=0; p<size; p++) {
+			int c = cost[p];
+
+			// a literal
+			relax(p + 1, c + price_len[ literal[p] ], 1, 0);
+
+			// each candidate, for the lengths not covered by the previous (shorter) one
+			int covered = MatchFinder.BREAK_EVEN - 1;
+			for (int i=first[p]; i<first[p + 1]; i++) {
+				int length = Math.min(candidate_length[i], size - p);
+				int distance = candidate_distance[i];
+
+				if (distance < 0) {
+					int word = -1 - distance;
+					if (length == candidate_length[i]) relax(p + length, c + price_len[MatchCodes.WORD_SYMBOL] + dico.nbBits(word), length, distance);
+					continue;
+				}
+
+				int symbol = MatchCodes.distanceSymbol(distance);
+				int distance_price = price_dis[symbol] + MatchCodes.DISTANCE_EXTRA[symbol];
+
+				for (int l = covered + 1; l <= length; l++) {
+					if (l == MatchFinder.BREAK_EVEN) {
+						if (distance <= MatchFinder.NEAR_DISTANCE) relax(p + l, c + price_len[MatchCodes.BREAK_EVEN_SYMBOL] + MatchCodes.BREAK_EVEN_DISTANCE_BITS, l, distance);
+					}
+					else relax(p + l, c + price_len[ MatchCodes.lengthSymbol(l) ] + MatchCodes.lengthExtraBits(l) + distance_price, l, distance);
+				}
+				covered = Math.max(covered, length);
+			}
+		}
+
+		// the path is read backward from the end of the segment, then reversed
+		steps = 0;
+		for (int p = size; p > 0; p -= step_length[steps++]) {
+			step_length[steps] = from_length[p];
+			step_distance[steps] = from_distance[p];
+		}
+
+		for (int i=0, j=steps-1; i<j; i++, j--) {
+			int t = step_length[i]; step_length[i] = step_length[j]; step_length[j] = t;
+			t = step_distance[i]; step_distance[i] = step_distance[j]; step_distance[j] = t;
+		}
+	}
+
+	private void relax(int p, int c, int length, int distance)
+	{
+		if (c < cost[p]) {
+			cost[p] = c;
+			from_length[p] = length;
+			from_distance[p] = distance;
+		}
+	}
+
+	/**
+		<p>Returns the price of each symbol : the length of its Huffman code for the current frequences.</p>
+	*/
+	private int[] prices(HuffmanEncoder encoder)
+	{
+		for (int i=0; i<encoder.n; i++) encoder.freq[i] += UNSEEN;
+		encoder.build(huffman, Huffman.MAX_BITS);
+
+		int[] price = new int[encoder.n];
+		for (int i=0; i<encoder.n; i++) price[i] = encoder.length[i];
+		return price;
+	}
+}
@@ -0,0 +1,66 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+
+/**
+	<p>A PrintTrace print each code into a log file, for debugging.</p>
+	<p>The lines are buffered : they are flushed at the end of the last block, and the log file must be closed.</p>
+*/
+public class PrintTrace implements TraceListener, Closeable {
+
+	PrintStream out;
+
+	public PrintTrace (PrintStream _out)
+	{
+		out = _out;
+	}
+
+	public PrintTrace (String logFile) throws IOException
+	{
+		this(new PrintStream(new BufferedOutputStream(new FileOutputStream(logFile), 1 << 16), false));
+	}
+
+	public void close()
+	{
+		out.close();
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public void literal(int value)
+	{
+		out.println((char) value + "," + value);
+	}
+
+	public void match(int length, int distance)
+	{
+		out.println(length + "," + distance);
+	}
+
+	public void word(int number, int length)
+	{
+		out.println("word " + number + "," + length);
+	}
+
+	public void tableBuilt(int table, int[] nbBits)
+	{
+		out.println("-----------------------------------------------");
+		for (int i=0; i<nbBits.length; i++) {
+			out.println(i + " -> " + nbBits[i]);
+		}
+		out.println("-----------------------------------------------");
+	}
+
+	public void blockFinished(boolean last, int size, long bits)
+	{
+		out.println("block of " + size + " codes, " + bits + " bits" + (last ? " (last block)" : ""));
+		if (last) out.flush();
+	}
+}
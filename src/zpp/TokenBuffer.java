@@ -0,0 +1,82 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>A TokenBuffer store the codes generated for a block, before the Huffman codes of the block are known.</p>
+
+	<p>Each code is packed into a long : the symbol (16 bits), the number of extra bits (8 bits)
+	and the extra value (32 bits), so no object is allocated per code and the buffer is reused from a block to the next one.</p>
+	<li>a single character is a symbol from 0 to 255,</li>
+	<li>a string matching is a length symbol, followed by a distance symbol (or by a raw distance, the symbol is NO_SYMBOL).</li>
+	<li>a word of the dictionnary is the symbol 280, the extra value is the number of the word.</li>
+*/
+public class TokenBuffer {
+
+	// the extra bits are written as is, without Huffman code
+	public static final int NO_SYMBOL = 0xFFFF;
+
+	long[] tokens;
+	int size = 0;
+
+	public TokenBuffer (int capacity)
+	{
+		tokens = new long[Math.max(capacity, 16)];
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Add a code without extra bits.</p>
+	*/
+	public void add(int symbol)
+	{
+		if (size == tokens.length) tokens = java.util.Arrays.copyOf(tokens, 2 * size);
+		tokens[size++] = symbol;
+	}
+
+	/**
+		<p>Add a code followed by <code>nbExtraBits</code> extra bits.</p>
+	*/
+	public void add(int symbol, int extraValue, int nbExtraBits)
+	{
+		if (size == tokens.length) tokens = java.util.Arrays.copyOf(tokens, 2 * size);
+		tokens[size++] = symbol | (nbExtraBits << 16) | ((extraValue & 0xFFFFFFFFL) << 24);
+	}
+
+	public long get(int i)
+	{
+		return tokens[i];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void clear()
+	{
+		size = 0;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public static int symbol(long token)
+	{
+		return (int) (token & 0xFFFF);
+	}
+
+	public static int nbExtraBits(long token)
+	{
+		return (int) ((token >>> 16) & 0xFF);
+	}
+
+	public static int extraValue(long token)
+	{
+		return (int) (token >>> 24);
+	}
+}
@@ -0,0 +1,46 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>A TraceListener is notified of the codes generated by LZCompress (or read by LZExpand).</p>
+
+	<p>No listener is set by default : the compression only test a null field for each code,
+	and nothing is printed nor allocated.</p>
+*/
+public interface TraceListener {
+
+	public static final int LENGTHS = 0;
+	public static final int DISTANCES = 1;
+
+	/**
+		<p>A single character (0 to 255).</p>
+	*/
+	public void literal(int value);
+
+	/**
+		<p>A string matching on the back window.</p>
+	*/
+	public void match(int length, int distance);
+
+	/**
+		<p>A word of the dictionnary, given by its number and its length.</p>
+	*/
+	public void word(int number, int length);
+
+	/**
+		<p>The Huffman code lengths of a block (0 for an unused symbol), for the LENGTHS or the DISTANCES table.</p>
+	*/
+	public void tableBuilt(int table, int[] nbBits);
+
+	/**
+		<p>The end of a block of <code>size</code> codes, <code>bits</code> is the number of bits written (or read) so far.</p>
+	*/
+	public void blockFinished(boolean last, int size, long bits);
+}
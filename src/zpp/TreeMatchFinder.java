@@ -0,0 +1,285 @@
+package zpp;
+
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+/**
+	<p>The back window is saved as a binary search tree representation :
+	each node is a position of the window, ordered by the string starting at this position.</p>
+
+	<p>A search walk down the tree from the root, the longest string matching is found on this path.</p>
+	<p>In a window larger than 64K, a search stops after <code>max_depth</code> nodes, as the tree of a large and redundant window
+	may degenerate into very long paths : the new string is then not inserted into the tree, whose order is kept.
+	The path shortens as its older strings leave the window, the next strings are then inserted again.</p>
+*/
+public class TreeMatchFinder extends MatchFinder {
+
+	static int UNUSED = 0;
+
+	// the longest path walked in a window larger than 64K (the tree of a 64K window is always walked to the end)
+	public int max_depth = 256;
+	int depth_limit = 0;
+
+	int tree_root;
+
+	int[] tree_parent;
+	int[] tree_smaller_child;
+	int[] tree_larger_child;
+
+	public TreeMatchFinder ()
+	{
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public void reset()
+	{
+		tree_root = window_size;
+		depth_limit = (window_size > (1 << 16)) ? max_depth : Integer.MAX_VALUE;
+
+		if ((tree_parent == null) || (tree_parent.length != window_size+1)) {
+			tree_parent = new int[window_size+1];
+			tree_smaller_child= new int[window_size+1];
+			tree_larger_child = new int[window_size+1];
+		}
+		else {
+			for (int i=0; i < window_size+1; i++) {
+				tree_parent[i] = 0;
+				tree_smaller_child[i] = 0;
+				tree_larger_child[i] = 0;
+			}
+		}
+	}
+
+	/**
+		<p>Only the nodes of the positions below <code>used</code> and the root are cleared.</p>
+	*/
+	public void reset(int used)
+	{
+		depth_limit = (window_size > (1 << 16)) ? max_depth : Integer.MAX_VALUE;
+
+		if ((tree_parent == null) || (tree_parent.length != window_size+1) || (used >= window_size)) {
+			reset();
+			return;
+		}
+
+		java.util.Arrays.fill(tree_parent, 0, used, 0);
+		java.util.Arrays.fill(tree_smaller_child, 0, used, 0);
+		java.util.Arrays.fill(tree_larger_child, 0, used, 0);
+
+		tree_parent[tree_root] = 0;
+		tree_smaller_child[tree_root] = 0;
+		tree_larger_child[tree_root] = 0;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Search for a string matching in the tree (on the back window).</p>
+	*/
+	public void addString(int new_node)
+	{
+		// the position 0 is the UNUSED link, it can only be searched
+		if (new_node == UNUSED) {
+			searchString(new_node, new_node);
+			return;
+		}
+
+		int test_node = tree_larger_child[ tree_root ];
+		int delta = 0;
+		int child;
+		int i = 0;
+
+		match_length = 0;
+		match_distance = 0;
+		candidates = 0;
+
+		// the first string is the root of the tree
+		if (test_node == UNUSED) {
+			tree_larger_child[ tree_root ] = new_node;
+			tree_parent[ new_node ] = tree_root;
+			tree_larger_child[ new_node ] = UNUSED;
+			tree_smaller_child[ new_node ] = UNUSED;
+			return;
+		}
+
+		int depth = depth_limit;
+
+		while (true) {
+			// the new string is not inserted below a long path (the tree is kept in order, the string is only searched)
+			if (depth-- == 0) {
+				tree_parent[ new_node ] = UNUSED;
+				return;
+			}
+
+			// variable "i" will give the length of the string matching.
+			for (i=0; i < max_length; i++) {
+				delta = window[ mod_window(new_node + i) ] - window[ mod_window(test_node + i) ];
+				if (delta != 0) break;
+			}
+
+			// if i is greater than previous match_length, save the match_length and match_distance variables of the string matching.
+			if (better(i, mod_window(new_node - test_node), true)) {
+				match_length = i;
+				match_distance = mod_window(new_node - test_node);
+				if (collect) candidate(match_length, match_distance);
+			}
+
+			// the same string replaces the older one
+			// (at the end of the input, the next bytes are unknown : the string is not inserted, the older one is as good)
+			if (i >= max_length) {
+				if (max_length == look_ahead_size) replaceNode(test_node, new_node);
+				return;
+			}
+
+			// searching into the tree (on the back window) for a new string matching.
+			if (delta >= 0)	{
+				child = tree_larger_child[ test_node ];
+
+				if (child == UNUSED) {
+					tree_larger_child[ test_node ] = new_node;
+					tree_parent[ new_node ] = test_node;
+					tree_larger_child[ new_node ] = UNUSED;
+					tree_smaller_child[ new_node ] = UNUSED;
+					return;
+				}
+			}
+			else	{
+				child = tree_smaller_child[ test_node ];
+
+				if (child == UNUSED) {
+					tree_smaller_child[ test_node ] = new_node;
+					tree_parent[ new_node ] = test_node;
+					tree_larger_child[ new_node ] = UNUSED;
+					tree_smaller_child[ new_node ] = UNUSED;
+					return;
+				}
+			}
+
+			test_node = child;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Search for a string matching in the tree (on the back window).</p>
+		<p>For lazy matching only.</p>
+	*/
+	public void searchString(int new_node, int current_distance)
+	{
+		int test_node = tree_larger_child[ tree_root ];
+		int delta = 0;
+		int child;
+		int i;
+
+		match_length = 0;
+		match_distance = 0;
+		candidates = 0;
+
+		if (test_node == UNUSED) return;
+
+		int depth = depth_limit;
+
+		while (true) {
+			if (depth-- == 0) return;
+
+			for (i=0; i < max_length; i++) {
+				delta = window[ mod_window(new_node + i) ] - window[ mod_window(test_node + i) ];
+				if (delta != 0) break;
+			}
+
+			if (better(i, mod_window(current_distance - test_node), true)) {
+				match_length = i;
+				match_distance = mod_window(current_distance - test_node);
+				if (collect) candidate(match_length, match_distance);
+			}
+
+			if (i >= max_length) return;
+
+			if (delta >= 0)	{
+				child = tree_larger_child[ test_node ];
+
+				if (child == UNUSED) {
+					return;
+				}
+			}
+			else	{
+				child = tree_smaller_child[ test_node ];
+
+				if (child == UNUSED) {
+					return;
+				}
+			}
+
+			test_node = child;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	public void deleteString(int p)
+	{
+		int replacement;
+
+		if (tree_parent[ p ] == UNUSED)	return;
+
+		if (tree_larger_child[ p ] == UNUSED)	contractNode(p, tree_smaller_child[ p ]);
+		else if (tree_smaller_child[ p ] == UNUSED)	contractNode(p, tree_larger_child[ p ]);
+		else {
+				replacement = findNextNode(p);
+				deleteString(replacement);
+				replaceNode(p, replacement);
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	private void contractNode(int old_node, int new_node)
+	{
+		if (new_node != UNUSED) tree_parent[ new_node ] = tree_parent[ old_node ];
+
+		if (tree_larger_child[ tree_parent[ old_node ] ] == old_node) {
+			tree_larger_child[ tree_parent[ old_node ] ] = new_node;
+		}
+		else {
+			tree_smaller_child[ tree_parent[ old_node ] ] = new_node;
+		}
+
+		tree_parent[ old_node ] = UNUSED;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	private void replaceNode(int old_node, int new_node)
+	{
+		int parent = tree_parent[ old_node ];
+
+		if (tree_smaller_child[ parent ] == old_node) {
+			tree_smaller_child[ parent ] = new_node;
+		}
+		else {
+			tree_larger_child[ parent ] = new_node;
+		}
+
+		tree_parent[ new_node ] = tree_parent[ old_node ];
+		tree_smaller_child[ new_node ] = tree_smaller_child [ old_node ];
+		tree_larger_child[ new_node ] = tree_larger_child [ old_node ];
+
+		// the UNUSED link must keep an UNUSED parent, or the position 0 would look like a node of the tree
+		if (tree_smaller_child[ new_node ] != UNUSED) tree_parent[ tree_smaller_child[ new_node ] ] = new_node;
+		if (tree_larger_child[ new_node ] != UNUSED) tree_parent[ tree_larger_child[ new_node ] ] = new_node;
+		tree_parent[ old_node ] = UNUSED;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	private int findNextNode(int node)
+	{
+		int next = tree_smaller_child[ node ];
+
+		while (tree_larger_child[ next ] != UNUSED) {
+			next = tree_larger_child[ next ];
+		}
+
+		return next;
+	}
+}
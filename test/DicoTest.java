@@ -0,0 +1,85 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The dictionnaries of words : only used when given to the compressor, and needed by the expander.</p>
+*/
+public class DicoTest {
+
+	private static Dico train() throws IOException
+	{
+		DicoTrainer trainer = new DicoTrainer();
+		for (int i=0; i<8; i++) trainer.addSample(RoundTrip.text(4000, 100 + i));
+		return trainer.train(256);
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void noDictionnaryByDefault() throws Exception
+	{
+		LZCompress compress = new LZCompress(Level.DEFAULT);
+		assertEquals(0, compress.header().flags & Header.WORDS);
+	}
+
+	@Test
+	public void customDictionnary() throws Exception
+	{
+		Dico dico = train();
+		assertTrue(dico.size() > 0);
+
+		// a small message refers to the words of the dictionnary
+		byte[] data = RoundTrip.text(300, 9);
+
+		for (int level : new int[] { Level.FASTEST, Level.BEST, Level.OPTIMAL }) {
+			LZCompress compress = new LZCompress(level);
+			compress.setDico(dico);
+			byte[] compressed = RoundTrip.compress(compress, data);
+			assertTrue((compress.header().flags & Header.WORDS) != 0);
+
+			// the dictionnary written and loaded again
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			dico.write(baos);
+			Dico loaded = Dico.load(new ByteArrayInputStream(baos.toByteArray()));
+
+			LZExpand expand = new LZExpand();
+			expand.setDico(loaded);
+			assertArrayEquals("level " + level, data, RoundTrip.expand(expand, compressed));
+		}
+	}
+
+	@Test
+	public void expandedWithAnotherDictionnary() throws Exception
+	{
+		LZCompress compress = new LZCompress(Level.DEFAULT);
+		compress.setDico(train());
+		byte[] compressed = RoundTrip.compress(compress, RoundTrip.text(300, 9));
+
+		LZExpand expand = new LZExpand();
+		expand.setDico(Dico.create(new String[] { "window", "tree" }, new int[] { 1, 1 }));
+
+		try {
+			RoundTrip.expand(expand, compressed);
+			fail("expanded with another dictionnary");
+		}
+		catch (IOException e) {
+			// the identifier of the dictionnary is checked
+		}
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void missingDictionnaryFile() throws Exception
+	{
+		Dico.load(new File("target", "missing.dico").getPath());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The independent frames (LZCompress.setFramed) : expanded sequentially or on the threads of a pool (LZExpand.setParallel),
+	and a corrupted frame throws an IOException with both expanders.</p>
+*/
+public class FramesTest {
+
+	static ForkJoinPool pool = new ForkJoinPool(4);
+
+	private static byte[] compress(byte[] data, int chunk_size, boolean parallel) throws IOException
+	{
+		LZCompress compress = new LZCompress(Level.DEFAULT);
+		compress.setFramed(true);
+		compress.setParallel(parallel ? pool : null, chunk_size, true);
+
+		return RoundTrip.compress(compress, data);
+	}
+
+	private static LZExpand expander(boolean parallel)
+	{
+		LZExpand expand = new LZExpand();
+		if (parallel) expand.setParallel(pool);
+		return expand;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void framesOfEachSize() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(60000, 1), RoundTrip.random(10000, 2), RoundTrip.run(10000, 0), RoundTrip.text(40000, 1));
+
+		for (int chunk_size : new int[] { 1000, 50000, 1 << 22 }) {
+			byte[] compressed = compress(data, chunk_size, true);
+
+			// the frames do not depend on the threads of the compression
+			assertArrayEquals(compressed, compress(data, chunk_size, false));
+
+			assertArrayEquals("frames of " + chunk_size, data, RoundTrip.expand(expander(false), compressed));
+			assertArrayEquals("frames of " + chunk_size, data, RoundTrip.expand(expander(true), compressed));
+		}
+	}
+
+	@Test
+	public void emptyAndShortInputs() throws Exception
+	{
+		for (int size = 0; size <= 2; size++) {
+			byte[] data = RoundTrip.random(size, size);
+			byte[] compressed = compress(data, 1000, true);
+
+			assertArrayEquals(data, RoundTrip.expand(expander(false), compressed));
+			assertArrayEquals(data, RoundTrip.expand(expander(true), compressed));
+		}
+	}
+
+	@Test
+	public void framesWithTheOtherSettings() throws Exception
+	{
+		byte[] preset = RoundTrip.text(5000, 3);
+		byte[] data = RoundTrip.concat(RoundTrip.text(100000, 4), RoundTrip.run(10000, 'a'));
+
+		LZCompress compress = new LZCompress(Level.OPTIMAL);
+		compress.setFramed(true);
+		compress.setParallel(pool, 30000, true);
+		compress.setWindowBits(20);
+		compress.setLongMatches(true);
+		compress.setDictionary(preset);
+		byte[] compressed = RoundTrip.compress(compress, data);
+
+		for (int parallel = 0; parallel < 2; parallel++) {
+			LZExpand expand = expander(parallel == 1);
+			expand.setDictionary(preset);
+			assertArrayEquals(data, RoundTrip.expand(expand, compressed));
+		}
+	}
+
+	@Test
+	public void streamWithoutFramesExpandedByAPool() throws Exception
+	{
+		byte[] data = RoundTrip.text(50000, 5);
+		assertArrayEquals(data, RoundTrip.expand(expander(true), RoundTrip.compress(new LZCompress(Level.DEFAULT), data)));
+	}
+
+	@Test(timeout = 20000)
+	public void corruptedFrames() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(30000, 6), RoundTrip.random(2000, 7));
+		byte[] compressed = compress(data, 8000, true);
+		Random random = new Random(8);
+
+		for (int i=0; i<200; i++) {
+			int position = random.nextInt(compressed.length);
+
+			byte[] corrupted = compressed.clone();
+			if (i % 2 == 0) corrupted = java.util.Arrays.copyOf(compressed, position);
+			else corrupted[position] = (byte) 0xFF;
+
+			// only an IOException, or other bytes for a changed byte of a frame
+			for (int parallel = 0; parallel < 2; parallel++) {
+				try {
+					RoundTrip.expand(expander(parallel == 1), corrupted);
+					assertTrue("cut at " + position, i % 2 == 1);
+				}
+				catch (IOException e) {
+				}
+			}
+		}
+	}
+}
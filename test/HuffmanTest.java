@@ -0,0 +1,100 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Random;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The Huffman codes : limited to 15 bits, complete, and checked by the expander,
+	so a corrupted stream throws an IOException (or expands to other bytes) instead of looping.</p>
+*/
+public class HuffmanTest {
+
+	// the sum of 2^-length of the used symbols, 1 for a complete code
+	private static double kraft(int[] nbBits)
+	{
+		double sum = 0;
+		for (int i=0; i<nbBits.length; i++) if (nbBits[i] > 0) sum += Math.pow(2, -nbBits[i]);
+		return sum;
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void lengthsAreLimited() throws Exception
+	{
+		// the frequences of Fibonacci give a code of 39 bits without limit
+		int n = 40;
+		int[] freq = new int[n];
+		freq[0] = freq[1] = 1;
+		for (int i=2; i<n; i++) freq[i] = freq[i-1] + freq[i-2];
+
+		int[] nbBits = new int[n];
+		new Huffman().buildLengths(freq, n, Huffman.MAX_BITS, nbBits);
+
+		for (int i=0; i<n; i++) assertTrue("symbol " + i, (nbBits[i] >= 1) && (nbBits[i] <= Huffman.MAX_BITS));
+		assertEquals(1.0, kraft(nbBits), 0);
+
+		// the code is accepted by the expander
+		new HuffmanDecoder(nbBits, n, 10);
+	}
+
+	@Test
+	public void singleAndUnusedSymbols() throws Exception
+	{
+		int[] freq = new int[286];
+		freq[65] = 100;
+
+		int[] nbBits = new int[286];
+		new Huffman().buildLengths(freq, 286, Huffman.MAX_BITS, nbBits);
+
+		assertEquals(1, nbBits[65]);
+		assertEquals(0.5, kraft(nbBits), 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void oversubscribedLengthsAreRefused() throws Exception
+	{
+		new HuffmanDecoder(new int[] { 1, 1, 1 }, 3, 8);
+	}
+
+	@Test(timeout = 20000)
+	public void corruptedStreams() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(30000, 1), RoundTrip.random(2000, 2), RoundTrip.run(3000, 0));
+		Random random = new Random(3);
+
+		for (int level : new int[] { Level.FASTEST, Level.BEST, Level.OPTIMAL }) {
+			byte[] compressed = RoundTrip.compress(new LZCompress(level), data);
+
+			for (int i=0; i<200; i++) {
+				int position = random.nextInt(compressed.length);
+
+				// the stream cut at any position
+				try {
+					RoundTrip.expand(new LZExpand(), java.util.Arrays.copyOf(compressed, position));
+					fail("level " + level + ", cut at " + position);
+				}
+				catch (IOException e) {
+				}
+
+				// a bit changed at any position (there is no checksum, the expanded bytes may only differ)
+				byte[] corrupted = compressed.clone();
+				corrupted[position] ^= (1 << random.nextInt(8));
+				try {
+					RoundTrip.expand(new LZExpand(), corrupted);
+				}
+				catch (IOException e) {
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Random;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>LZOutputStream and LZInputStream : the bytes written by pieces and flushed at any time are read back.</p>
+*/
+public class LZStreamTest {
+
+	private static byte[] write(LZCompress compress, byte[] data, long seed) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		LZOutputStream os = new LZOutputStream(baos, compress);
+		Random random = new Random(seed);
+
+		int n = 0;
+		while (n < data.length) {
+			int size = Math.min(data.length - n, random.nextInt(random.nextBoolean() ? 64 : 20000));
+			os.write(data, n, size);
+			n += size;
+
+			if (random.nextInt(3) == 0) os.flush();
+		}
+		os.close();
+
+		return baos.toByteArray();
+	}
+
+	private static byte[] read(LZExpand expand, byte[] compressed) throws IOException
+	{
+		LZInputStream is = new LZInputStream(new ByteArrayInputStream(compressed), expand);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int n;
+
+		while ((n = is.read(buffer, 0, buffer.length)) >= 0) baos.write(buffer, 0, n);
+		return baos.toByteArray();
+	}
+
+	/**
+		<p>The bytes written so far into a ByteArrayOutputStream : a read beyond them fails, where a socket would block.</p>
+	*/
+	static class Pending extends InputStream {
+		ByteArrayOutputStream written;
+		int position = 0;
+
+		Pending (ByteArrayOutputStream _written)
+		{
+			written = _written;
+		}
+
+		public int read() throws IOException
+		{
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			byte[] data = written.toByteArray();
+			if (position == data.length) throw new IOException("read beyond the bytes flushed");
+
+			int n = Math.min(len, data.length - position);
+			System.arraycopy(data, position, b, off, n);
+			position += n;
+			return n;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void emptyAndShortStreams() throws Exception
+	{
+		for (int size = 0; size <= 2; size++) {
+			byte[] data = RoundTrip.random(size, size);
+			assertArrayEquals(data, read(new LZExpand(), write(new LZCompress(Level.DEFAULT), data, size)));
+		}
+	}
+
+	@Test
+	public void writesAndFlushes() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(60000, 3), RoundTrip.run(6000, 0), RoundTrip.random(20000, 4), RoundTrip.text(30000, 5));
+
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) {
+			LZCompress compress = new LZCompress(level);
+			compress.setLongMatches(level % 2 == 0);
+
+			assertArrayEquals("level " + level, data, read(new LZExpand(), write(compress, data, level)));
+		}
+	}
+
+	@Test
+	public void writesAndFlushesInALargeWindowWithAPresetDictionary() throws Exception
+	{
+		byte[] preset = RoundTrip.text(10000, 6);
+		byte[] data = RoundTrip.concat(RoundTrip.text(100000, 7), RoundTrip.random(100000, 8), RoundTrip.text(100000, 7));
+
+		LZCompress compress = new LZCompress(Level.BEST);
+		compress.setWindowBits(20);
+		compress.setDictionary(preset);
+
+		LZExpand expand = new LZExpand();
+		expand.setDictionary(preset);
+
+		assertArrayEquals(data, read(expand, write(compress, data, 9)));
+	}
+
+	@Test
+	public void flushedMessagesAreReadAtOnce() throws Exception
+	{
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) {
+			ByteArrayOutputStream written = new ByteArrayOutputStream();
+			LZOutputStream os = new LZOutputStream(written, new LZCompress(level));
+			os.flush();
+
+			LZInputStream is = new LZInputStream(new Pending(written));
+			byte[] buffer = new byte[4096];
+
+			for (int i=0; i<100; i++) {
+				byte[] message = ("{\"id\": " + i + ", \"user\": \"u" + (i % 7) + "\", \"action\": \"click\"}\n").getBytes();
+				if (i % 10 == 9) message = RoundTrip.text(3000, i);
+
+				os.write(message);
+				os.flush();
+
+				// a single read returns the message, without reading the next one
+				int n = is.read(buffer, 0, buffer.length);
+				assertEquals("level " + level + ", message " + i, message.length, n);
+				assertArrayEquals(message, java.util.Arrays.copyOf(buffer, n));
+			}
+
+			// a flush without new byte writes nothing
+			int size = written.size();
+			os.flush();
+			assertEquals(size, written.size());
+
+			os.close();
+			assertEquals(-1, is.read());
+		}
+	}
+
+	@Test
+	public void flushAtABlockBoundary() throws Exception
+	{
+		// the codes of these 65551 random bytes fill a block exactly : no empty block is written before the sync flush
+		byte[] data = RoundTrip.random(65551 + 1000, 1);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		LZOutputStream os = new LZOutputStream(baos, 1);
+		os.write(data, 0, 65551);
+		os.flush();
+		os.write(data, 65551, 1000);
+		os.close();
+
+		assertArrayEquals(data, read(new LZExpand(), baos.toByteArray()));
+	}
+
+	@Test(timeout = 10000)
+	public void manyFlushedMessages() throws Exception
+	{
+		ByteArrayOutputStream messages = new ByteArrayOutputStream();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		LZCompress compress = new LZCompress(Level.BEST);
+		compress.setWindowBits(22);
+		LZOutputStream os = new LZOutputStream(baos, compress);
+
+		// the bytes already compressed are not compressed again by each flush
+		for (int i=0; i<2000; i++) {
+			byte[] message = ("{\"id\": " + i + ", \"user\": \"u" + (i % 7) + "\", \"action\": \"click\"}\n").getBytes();
+			os.write(message);
+			os.flush();
+			messages.write(message);
+		}
+		os.close();
+
+		assertArrayEquals(messages.toByteArray(), read(new LZExpand(), baos.toByteArray()));
+	}
+}
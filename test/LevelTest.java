@@ -0,0 +1,130 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The compression levels (zpp.Level) : each level expands back to its input, on streams and on byte buffers,
+	from the empty input to the random bytes.</p>
+*/
+public class LevelTest {
+
+	private static byte[][] inputs()
+	{
+		return new byte[][] {
+			new byte[0], RoundTrip.random(1, 1), RoundTrip.random(2, 2), RoundTrip.run(2, 0),
+			RoundTrip.text(50000, 3), RoundTrip.random(30000, 4), RoundTrip.run(70000, 0x80),
+			RoundTrip.concat(RoundTrip.random(1000, 5), RoundTrip.text(5000, 6), RoundTrip.random(1000, 5))
+		};
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void streamsOfEachLevel() throws Exception
+	{
+		byte[][] inputs = inputs();
+
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) {
+			for (int i=0; i<inputs.length; i++) {
+				byte[] compressed = RoundTrip.compress(new LZCompress(level), inputs[i]);
+				assertArrayEquals("level " + level + ", input " + i, inputs[i], RoundTrip.expand(new LZExpand(), compressed));
+			}
+		}
+	}
+
+	@Test
+	public void buffersOfEachLevel() throws Exception
+	{
+		byte[][] inputs = inputs();
+
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) {
+			// a compressor and an expander reused for all the inputs
+			LZCompress compress = new LZCompress(level);
+			LZExpand expand = new LZExpand();
+
+			for (int i=0; i<inputs.length; i++) {
+				ByteBuffer compressed = ByteBuffer.allocate(LZCompress.maxCompressedLength(inputs[i].length));
+				int n = compress.compress(inputs[i], compressed);
+				assertEquals(n, compressed.position());
+
+				ByteBuffer expanded = ByteBuffer.allocateDirect(inputs[i].length);
+				compressed.flip();
+				assertEquals(inputs[i].length, expand.decompress(compressed, expanded));
+
+				byte[] b = new byte[inputs[i].length];
+				expanded.flip();
+				expanded.get(b);
+				assertArrayEquals("level " + level + ", input " + i, inputs[i], b);
+			}
+		}
+	}
+
+	@Test
+	public void randomBytesAreStored() throws Exception
+	{
+		byte[] data = RoundTrip.random(100000, 7);
+
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) {
+			ByteBuffer compressed = ByteBuffer.allocate(LZCompress.maxCompressedLength(data.length));
+			int n = new LZCompress(level).compress(data, compressed);
+			assertEquals("level " + level, LZCompress.maxCompressedLength(data.length), n);
+
+			ByteBuffer expanded = ByteBuffer.allocate(data.length);
+			compressed.flip();
+			new LZExpand().decompress(compressed, expanded);
+			assertArrayEquals("level " + level, data, expanded.array());
+		}
+	}
+
+	@Test
+	public void higherLevelsCompressBetter() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(200000, 8), RoundTrip.random(2000, 9), RoundTrip.text(50000, 8));
+
+		int fastest = RoundTrip.compress(new LZCompress(Level.FASTEST), data).length;
+		int best = RoundTrip.compress(new LZCompress(Level.BEST), data).length;
+		assertTrue(fastest + " / " + best, best < fastest);
+	}
+
+	@Test
+	public void bestLevelsDoNotCompressLess() throws Exception
+	{
+		byte[] data = java.nio.file.Files.readAllBytes(new java.io.File("prgs", "example.html").toPath());
+
+		int previous = Integer.MAX_VALUE;
+		for (int level : new int[] { 7, Level.BEST, Level.ULTRA, Level.OPTIMAL }) {
+			int n = RoundTrip.compress(new LZCompress(level), data).length;
+			assertTrue("level " + level + " : " + n + " / " + previous, n <= previous);
+			previous = n;
+		}
+	}
+
+	@Test
+	public void optimalLevelCompressesBetterThanBest() throws Exception
+	{
+		// more codes than a block and than a segment of the parser, and string matchings across both of them
+		byte[] data = RoundTrip.concat(RoundTrip.random(40000, 10), RoundTrip.text(60000, 11), RoundTrip.random(40000, 10), RoundTrip.run(5000, 0));
+
+		for (int long_matches = 0; long_matches < 2; long_matches++) {
+			LZCompress optimal = new LZCompress(Level.OPTIMAL);
+			optimal.setLongMatches(long_matches == 1);
+			LZCompress best = new LZCompress(Level.BEST);
+			best.setLongMatches(long_matches == 1);
+
+			byte[] compressed = RoundTrip.compress(optimal, data);
+			assertArrayEquals(data, RoundTrip.expand(new LZExpand(), compressed));
+
+			int n = RoundTrip.compress(best, data).length;
+			assertTrue(compressed.length + " / " + n, compressed.length <= n);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Random;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The string matchings up to 4096 bytes (LZCompress.setLongMatches) : the runs longer than the look ahead
+	must be compressed in linear time, up to the end of the input.</p>
+*/
+public class LongMatchesTest {
+
+	private static void roundTrip(int level, int window_bits, byte[] data) throws Exception
+	{
+		LZCompress compress = new LZCompress(level);
+		compress.setWindowBits(window_bits);
+		compress.setLongMatches(true);
+
+		byte[] compressed = RoundTrip.compress(compress, data);
+		assertArrayEquals("level " + level, data, RoundTrip.expand(new LZExpand(), compressed));
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test(timeout = 5000)
+	public void runOfZeros() throws Exception
+	{
+		byte[] data = RoundTrip.run(10240, 0);
+
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) roundTrip(level, 16, data);
+	}
+
+	@Test(timeout = 5000)
+	public void runOfZerosInALargeWindow() throws Exception
+	{
+		byte[] data = RoundTrip.run(10240, 0);
+
+		roundTrip(Level.BEST, 22, data);
+		roundTrip(Level.OPTIMAL, 22, data);
+	}
+
+	@Test(timeout = 10000)
+	public void runsBetweenText() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(20000, 1), RoundTrip.run(5000, 'a'), RoundTrip.text(3000, 2), RoundTrip.run(4097, 0));
+
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) roundTrip(level, 16, data);
+	}
+
+	@Test(timeout = 5000)
+	public void longRunIsCodedOnce() throws Exception
+	{
+		byte[] data = RoundTrip.run(4096 * 8, 0);
+
+		LZCompress compress = new LZCompress(Level.BEST);
+		compress.setLongMatches(true);
+
+		// a literal, then 8 string matchings of 4096 bytes at most
+		assertTrue(RoundTrip.compress(compress, data).length < 64);
+	}
+
+	@Test
+	public void emptyAndShortInputs() throws Exception
+	{
+		for (int size = 0; size <= 2; size++) {
+			for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) roundTrip(level, 16, RoundTrip.run(size, size));
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void corruptedLongLengths() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(5000, 3), RoundTrip.run(9000, 0), RoundTrip.text(5000, 3), RoundTrip.run(300, 'a'));
+		Random random = new Random(4);
+
+		LZCompress compress = new LZCompress(Level.BEST);
+		compress.setLongMatches(true);
+		byte[] compressed = RoundTrip.compress(compress, data);
+
+		// the long lengths are cut or changed : only an IOException, or other bytes
+		for (int i=0; i<300; i++) {
+			int position = random.nextInt(compressed.length);
+			byte[] corrupted = compressed.clone();
+			if (i % 2 == 0) corrupted = java.util.Arrays.copyOf(compressed, position);
+			else corrupted[position] ^= (1 << random.nextInt(8));
+
+			try {
+				RoundTrip.expand(new LZExpand(), corrupted);
+				assertTrue("cut at " + position, i % 2 == 1);
+			}
+			catch (IOException e) {
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import org.junit.Test;
+import binary.*;
+import zpp.*;
+
+/**
+	<p>The compression of files (LZCompress.compressFile, LZExpand.expandFile) : the input files are mapped
+	by regions smaller than the data, and expand back to the input file.</p>
+*/
+public class MappedFileTest {
+
+	private static byte[] roundTrip(LZCompress compress, byte[] data) throws IOException
+	{
+		File in = File.createTempFile("mapped", ".in");
+		File out = File.createTempFile("mapped", ".lz");
+		File copy = File.createTempFile("mapped", ".out");
+
+		try {
+			Files.write(in.toPath(), data);
+			compress.compressFile(in.getPath(), out.getPath());
+			new LZExpand().expandFile(out.getPath(), copy.getPath());
+
+			// the compressed file is the same as the compressed stream
+			assertArrayEquals(RoundTrip.compress(compress, data), Files.readAllBytes(out.toPath()));
+			return Files.readAllBytes(copy.toPath());
+		}
+		finally {
+			in.delete();
+			out.delete();
+			copy.delete();
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void filesMappedBySeveralRegions() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(150000, 1), RoundTrip.random(20000, 2), RoundTrip.run(30000, 0), RoundTrip.text(100000, 1));
+		long map_size = MappedInputStream.MAP_SIZE;
+
+		try {
+			// regions of 4 KB for the input file, and of 16 KB for the compressed file
+			for (long size : new long[] { 4096, 16384 }) {
+				MappedInputStream.MAP_SIZE = size;
+
+				for (int settings = 0; settings < 4; settings++) {
+					LZCompress compress = new LZCompress((settings & 1) != 0 ? Level.BEST : Level.DEFAULT);
+					if ((settings & 2) != 0) compress.setWindowBits(20);
+
+					assertArrayEquals("regions of " + size + ", settings " + settings, data, roundTrip(compress, data));
+				}
+			}
+		}
+		finally {
+			MappedInputStream.MAP_SIZE = map_size;
+		}
+	}
+
+	@Test
+	public void emptyAndShortFiles() throws Exception
+	{
+		long map_size = MappedInputStream.MAP_SIZE;
+
+		try {
+			MappedInputStream.MAP_SIZE = 1;
+
+			for (int size = 0; size <= 2; size++) {
+				byte[] data = RoundTrip.random(size, size);
+				assertArrayEquals("size " + size, data, roundTrip(new LZCompress(Level.DEFAULT), data));
+			}
+		}
+		finally {
+			MappedInputStream.MAP_SIZE = map_size;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The compression by chunks on the threads of a pool (LZCompress.setParallel) : the chunks, primed or not,
+	expand back to the input as a single stream.</p>
+*/
+public class ParallelTest {
+
+	static ForkJoinPool pool = new ForkJoinPool(4);
+
+	static byte[] input()
+	{
+		return RoundTrip.concat(RoundTrip.text(60000, 1), RoundTrip.random(10000, 2), RoundTrip.run(10000, 0), RoundTrip.text(40000, 1));
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void chunksOfEachSize() throws Exception
+	{
+		byte[] data = input();
+
+		for (int chunk_size : new int[] { 1000, 50000, 65536, 1 << 22 }) {
+			for (int level : new int[] { Level.FASTEST, Level.BEST, Level.OPTIMAL }) {
+				LZCompress compress = new LZCompress(level);
+				compress.setParallel(pool, chunk_size, true);
+
+				byte[] compressed = RoundTrip.compress(compress, data);
+				assertArrayEquals("chunks of " + chunk_size + ", level " + level, data, RoundTrip.expand(new LZExpand(), compressed));
+			}
+		}
+	}
+
+	@Test
+	public void chunksOfOneByte() throws Exception
+	{
+		for (int size = 0; size <= 200; size += 50) {
+			byte[] data = RoundTrip.text(size, size);
+
+			LZCompress compress = new LZCompress(Level.DEFAULT);
+			compress.setParallel(pool, 1, true);
+
+			byte[] compressed = RoundTrip.compress(compress, data);
+			assertArrayEquals("size " + size, data, RoundTrip.expand(new LZExpand(), compressed));
+		}
+	}
+
+	@Test
+	public void chunksAtABlockBoundary() throws Exception
+	{
+		// the codes of the first chunk of 65551 random bytes fill a block exactly : no empty block ends the chunk
+		byte[] data = RoundTrip.random(140000, 1);
+
+		for (int prime = 0; prime < 2; prime++) {
+			LZCompress compress = new LZCompress(Level.FASTEST);
+			compress.setParallel(pool, 65551, prime == 1);
+
+			byte[] compressed = RoundTrip.compress(compress, data);
+			assertArrayEquals(data, RoundTrip.expand(new LZExpand(), compressed));
+		}
+	}
+
+	@Test
+	public void primedChunksCompressLikeASingleStream() throws Exception
+	{
+		byte[] data = input();
+
+		LZCompress primed = new LZCompress(Level.BEST);
+		primed.setParallel(pool, 65536, true);
+		LZCompress independent = new LZCompress(Level.BEST);
+		independent.setParallel(pool, 65536, false);
+
+		int sequential = RoundTrip.compress(new LZCompress(Level.BEST), data).length;
+		byte[] compressed = RoundTrip.compress(primed, data);
+		byte[] other = RoundTrip.compress(independent, data);
+
+		assertArrayEquals(data, RoundTrip.expand(new LZExpand(), other));
+		assertTrue(compressed.length + " / " + sequential, compressed.length < sequential * 101 / 100);
+		assertTrue(compressed.length + " / " + other.length, compressed.length < other.length);
+	}
+
+	@Test
+	public void chunksWithTheOtherSettings() throws Exception
+	{
+		byte[] data = input();
+		byte[] preset = RoundTrip.text(5000, 3);
+
+		for (int settings = 0; settings < 8; settings++) {
+			LZCompress compress = new LZCompress(Level.BEST);
+			compress.setParallel(pool, 50000, true);
+			if ((settings & 1) != 0) compress.setWindowBits(20);
+			if ((settings & 2) != 0) compress.setLongMatches(true);
+			if ((settings & 4) != 0) compress.setDictionary(preset);
+
+			LZExpand expand = new LZExpand();
+			if ((settings & 4) != 0) expand.setDictionary(preset);
+
+			byte[] compressed = RoundTrip.compress(compress, data);
+			assertArrayEquals("settings " + settings, data, RoundTrip.expand(expand, compressed));
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The preset dictionnary (LZCompress.setDictionary) : a small message refers to its bytes,
+	and can only be expanded with the same bytes.</p>
+*/
+public class PresetTest {
+
+	private static byte[] message(int i)
+	{
+		return ("{\"id\": " + i + ", \"user\": \"u" + (i % 7) + "\", \"action\": \"click\", \"page\": \"/index.html\"}\n").getBytes();
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void smallMessages() throws Exception
+	{
+		ByteArrayOutputStream samples = new ByteArrayOutputStream();
+		for (int i=0; i<20; i++) samples.write(message(1000 + i));
+		byte[] preset = samples.toByteArray();
+
+		for (int level = Level.FASTEST; level <= Level.OPTIMAL; level++) {
+			LZCompress compress = new LZCompress(level);
+			compress.setDictionary(preset);
+			LZExpand expand = new LZExpand();
+			expand.setDictionary(preset);
+
+			for (int i=0; i<10; i++) {
+				byte[] data = message(i);
+
+				ByteBuffer compressed = ByteBuffer.allocate(LZCompress.maxCompressedLength(data.length));
+				compress.compress(data, compressed);
+				compressed.flip();
+
+				// a message is coded by a few string matchings of the preset dictionnary
+				int n = compressed.remaining();
+				assertTrue("level " + level + ", " + n + " bytes", n < data.length / 2);
+
+				ByteBuffer expanded = ByteBuffer.allocate(data.length);
+				expand.decompress(compressed, expanded);
+				assertArrayEquals("level " + level, data, expanded.array());
+			}
+		}
+	}
+
+	@Test
+	public void emptyAndShortInputs() throws Exception
+	{
+		byte[] preset = RoundTrip.text(1000, 1);
+
+		for (int size = 0; size <= 2; size++) {
+			byte[] data = RoundTrip.random(size, size);
+
+			LZCompress compress = new LZCompress(Level.DEFAULT);
+			compress.setDictionary(preset);
+			LZExpand expand = new LZExpand();
+			expand.setDictionary(preset);
+
+			assertArrayEquals(data, RoundTrip.expand(expand, RoundTrip.compress(compress, data)));
+		}
+	}
+
+	@Test
+	public void largestPresetDictionnary() throws Exception
+	{
+		// only the last bytes of the preset dictionnary fit into the window, whatever the look ahead
+		byte[] preset = RoundTrip.concat(RoundTrip.random(50000, 2), RoundTrip.text(50000, 3));
+		byte[] data = RoundTrip.concat(RoundTrip.text(20000, 3), RoundTrip.run(5000, 0), RoundTrip.text(20000, 4));
+
+		for (int settings = 0; settings < 4; settings++) {
+			LZCompress compress = new LZCompress(Level.BEST);
+			if ((settings & 1) != 0) compress.setLongMatches(true);
+			if ((settings & 2) != 0) compress.setWindowBits(17);
+			compress.setDictionary(preset);
+
+			LZExpand expand = new LZExpand();
+			expand.setDictionary(preset);
+
+			assertArrayEquals("settings " + settings, data, RoundTrip.expand(expand, RoundTrip.compress(compress, data)));
+		}
+	}
+
+	@Test
+	public void expandedWithoutThePresetDictionnary() throws Exception
+	{
+		LZCompress compress = new LZCompress(Level.DEFAULT);
+		compress.setDictionary(RoundTrip.text(1000, 5));
+		byte[] compressed = RoundTrip.compress(compress, message(1));
+
+		LZExpand other = new LZExpand();
+		other.setDictionary(RoundTrip.text(1000, 6));
+
+		for (LZExpand expand : new LZExpand[] { new LZExpand(), other }) {
+			try {
+				RoundTrip.expand(expand, compressed);
+				fail("expanded without the preset dictionnary");
+			}
+			catch (IOException e) {
+				// the identifier of the preset dictionnary is checked
+			}
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The trace of the codes : buffered, but complete at the end of the compression and of the expansion.</p>
+*/
+public class PrintTraceTest {
+
+	@Test
+	public void traceIsFlushedByTheLastBlock() throws Exception
+	{
+		byte[] data = RoundTrip.concat(RoundTrip.text(200000, 1), RoundTrip.run(1000, 0));
+
+		ByteArrayOutputStream compress_log = new ByteArrayOutputStream();
+		PrintTrace compress_trace = new PrintTrace(new PrintStream(new BufferedOutputStream(compress_log), false));
+		LZCompress compress = new LZCompress(Level.get(Level.DEFAULT), Level.get(Level.DEFAULT).createFinder(), compress_trace);
+		byte[] compressed = RoundTrip.compress(compress, data);
+
+		ByteArrayOutputStream expand_log = new ByteArrayOutputStream();
+		PrintTrace expand_trace = new PrintTrace(new PrintStream(new BufferedOutputStream(expand_log), false));
+		assertArrayEquals(data, RoundTrip.expand(new LZExpand(expand_trace), compressed));
+
+		// not closed yet (the tables of a block are traced after its codes by the compressor, before them by the expander)
+		String[] compress_lines = compress_log.toString().split("\n");
+		String[] expand_lines = expand_log.toString().split("\n");
+		assertTrue(compress_lines[compress_lines.length - 1].endsWith("(last block)"));
+		assertTrue(expand_lines[expand_lines.length - 1].endsWith("(last block)"));
+		assertEquals(compress_lines.length, expand_lines.length);
+
+		compress_trace.close();
+		expand_trace.close();
+	}
+}
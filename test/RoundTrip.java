@@ -0,0 +1,82 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import java.io.*;
+import java.util.Random;
+
+/**
+	<p>The compression and expansion of byte arrays, and the inputs of the tests.</p>
+*/
+class RoundTrip {
+
+	static byte[] compress(LZCompress compress, byte[] data) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		compress.compress(new ByteArrayInputStream(data), baos);
+		return baos.toByteArray();
+	}
+
+	static byte[] expand(LZExpand expand, byte[] data) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		expand.expand(new ByteArrayInputStream(data), baos);
+		return baos.toByteArray();
+	}
+
+	// ---------------------------------------------------------------------------------------------
+	/**
+		<p>Returns <code>size</code> bytes of the same value.</p>
+	*/
+	static byte[] run(int size, int value)
+	{
+		byte[] data = new byte[size];
+		java.util.Arrays.fill(data, (byte) value);
+		return data;
+	}
+
+	/**
+		<p>Returns <code>size</code> random bytes (the same ones for a same seed).</p>
+	*/
+	static byte[] random(int size, long seed)
+	{
+		byte[] data = new byte[size];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	/**
+		<p>Returns <code>size</code> bytes of text : random words of a small vocabulary, so the strings repeat at any distance.</p>
+	*/
+	static byte[] text(int size, long seed)
+	{
+		String[] words = { "the ", "window ", "string ", "matching ", "of ", "a ", "compressed ", "block ", "tree ", "and ",
+			"<td class=\"name\">", "</td>\n", "{\"id\": ", "\"level\": 9, ", "huffman ", "codes ", "distance ", "length " };
+
+		Random random = new Random(seed);
+		byte[] data = new byte[size];
+		int n = 0;
+
+		while (n < size) {
+			byte[] word = words[random.nextInt(words.length)].getBytes();
+			int count = Math.min(word.length, size - n);
+			System.arraycopy(word, 0, data, n, count);
+			n += count;
+		}
+		return data;
+	}
+
+	/**
+		<p>Returns the concatenation of the arrays.</p>
+	*/
+	static byte[] concat(byte[]... parts)
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int i=0; i<parts.length; i++) baos.write(parts[i], 0, parts[i].length);
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+	Zip++ application
+	Copyright 2000, 2003 Zip-Technology.com
+
+	@Author Ronan Merien <ronan.merien@zip-technology.com>
+	@Version 1.2, 2003/10/15
+*/
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import org.junit.Test;
+import zpp.*;
+
+/**
+	<p>The windows from 64K to 64 MB (LZCompress.setWindowBits) : the strings farther than 64K are found,
+	and only the window holding the input is allocated when its size is known.</p>
+*/
+public class WindowTest {
+
+	// ---------------------------------------------------------------------------------------------
+	@Test
+	public void farStringsInALargeWindow() throws Exception
+	{
+		// a block of random bytes repeated 300 KB later
+		byte[] block = RoundTrip.random(20000, 1);
+		byte[] data = RoundTrip.concat(block, RoundTrip.text(300000, 2), block);
+
+		for (int level : new int[] { Level.FASTEST, Level.DEFAULT, Level.BEST, Level.OPTIMAL }) {
+			LZCompress small = new LZCompress(level);
+			LZCompress large = new LZCompress(level);
+			large.setWindowBits(20);
+
+			byte[] compressed = RoundTrip.compress(large, data);
+			assertArrayEquals("level " + level, data, RoundTrip.expand(new LZExpand(), compressed));
+			assertTrue("level " + level, compressed.length + 10000 < RoundTrip.compress(small, data).length);
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void shortInputsInTheLargestWindow() throws Exception
+	{
+		LZCompress compress = new LZCompress(Level.BEST);
+		compress.setWindowBits(MatchCodes.MAX_WINDOW_BITS);
+
+		for (int size = 0; size <= 2; size++) {
+			byte[] data = RoundTrip.random(size, size);
+			byte[] compressed = RoundTrip.compress(compress, data);
+			assertArrayEquals(data, RoundTrip.expand(new LZExpand(), compressed));
+
+			// the window of the expander is sized from the destination buffer
+			ByteBuffer dst = ByteBuffer.allocate(size);
+			assertEquals(size, new LZExpand().decompress(ByteBuffer.wrap(compressed), dst));
+			assertArrayEquals(data, dst.array());
+		}
+
+		// a window of 64K, not of 64 MB
+		assertEquals(1 << 16, compress.window_size);
+	}
+
+	@Test
+	public void reusedExpanderKeepsItsWindow() throws Exception
+	{
+		LZCompress compress = new LZCompress(Level.DEFAULT);
+		compress.setWindowBits(20);
+		LZExpand expand = new LZExpand();
+
+		byte[] window = null;
+		for (int size : new int[] { 300000, 100, 70000, 300000, 0 }) {
+			byte[] data = RoundTrip.concat(RoundTrip.text(size / 2, size), RoundTrip.random(size - size / 2, size));
+			ByteBuffer compressed = ByteBuffer.allocate(LZCompress.maxCompressedLength(size));
+			compress.compress(data, compressed);
+			compressed.flip();
+
+			ByteBuffer dst = ByteBuffer.allocate(size);
+			expand.decompress(compressed, dst);
+			assertArrayEquals("size " + size, data, dst.array());
+
+			// the window of the first buffer is large enough for the next ones
+			if (window == null) window = expand.window;
+			assertSame("size " + size, window, expand.window);
+		}
+	}
+
+	@Test
+	public void corruptedWindowBits() throws Exception
+	{
+		LZCompress compress = new LZCompress(Level.DEFAULT);
+		compress.setWindowBits(20);
+		byte[] compressed = RoundTrip.compress(compress, RoundTrip.text(1000, 3));
+
+		// a window of 2^27 bytes is refused by the header
+		Header header = new Header();
+		header.read(new binary.BinaryInputStream(new ByteArrayInputStream(compressed)));
+		header.window_bits = MatchCodes.MAX_WINDOW_BITS + 1;
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		binary.BinaryOutputStream out = new binary.BinaryOutputStream(baos);
+		header.write(out);
+		out.flush();
+
+		try {
+			RoundTrip.expand(new LZExpand(), baos.toByteArray());
+			fail("window of " + header.window_bits + " bits");
+		}
+		catch (IOException e) {
+			// the window bits are checked
+		}
+	}
+}